@@ -84,6 +84,46 @@ exports.sendNotificationHTTP = functions.https.onRequest((req, res) => {
   });
 });
 
+// --- Batch HTTP Endpoint (room messages: one call for up to MAX_BATCH receivers) ---
+const MAX_BATCH = 500;
+
+exports.sendBatchNotificationHTTP = functions.https.onRequest((req, res) => {
+  cors(req, res, async () => {
+    if (req.method === 'OPTIONS') return res.status(204).send('');
+    if (req.method !== 'POST') return res.status(405).send('Method Not Allowed');
+
+    const errorMsg = validateFields(req.body, ['roomId', 'senderId', 'message']);
+    if (errorMsg) return res.status(400).json({ error: errorMsg });
+
+    const { receiverIds } = req.body;
+    if (!Array.isArray(receiverIds) || receiverIds.length === 0 || receiverIds.length > MAX_BATCH) {
+      return res.status(400).json({ error: `receiverIds must hold 1-${MAX_BATCH} ids` });
+    }
+
+    // settle every receiver, so the caller retries only the ones that failed
+    const results = await Promise.allSettled(receiverIds.map((receiverId) =>
+      handleNotification({ ...req.body, receiverId })));
+    const failedReceiverIds = [];
+    results.forEach((result, i) => {
+      if (result.status === 'rejected') {
+        console.error(`Batch notification to ${receiverIds[i]} failed:`, result.reason);
+        failedReceiverIds.push(receiverIds[i]);
+      }
+    });
+
+    if (failedReceiverIds.length === receiverIds.length) {
+      return res.status(500).json({ error: 'Internal server error', failedReceiverIds });
+    }
+    res.status(200).json({
+      success: failedReceiverIds.length === 0,
+      roomId: req.body.roomId,
+      notificationsSent: receiverIds.length - failedReceiverIds.length,
+      failedReceiverIds,
+      timestamp: new Date().toISOString()
+    });
+  });
+});
+
 // --- Callable Function ---
 exports.sendNotification = functions.https.onCall(async (data, context) => {
   try {
@@ -0,0 +1,31 @@
+package com.config;
+
+import com.websocket.Cluster_Fanout_Interceptor;
+import com.websocket.Cluster_Transport;
+import com.websocket.Loopback_Cluster_Transport;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.MessageChannel;
+
+@Configuration
+@ConditionalOnProperty(name = "chat.broker.mode", havingValue = "cluster")
+public class Broker_Cluster_Config {
+
+    @Bean
+    @ConditionalOnMissingBean(Cluster_Transport.class)
+    public Cluster_Transport clusterTransport(@Value("${chat.broker.cluster.name:chat}") String clusterName) {
+        return new Loopback_Cluster_Transport(clusterName);
+    }
+
+    @Bean
+    public Cluster_Fanout_Interceptor clusterFanoutInterceptor(Cluster_Transport clusterTransport,
+                                                               @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                                                               @Value("${chat.broker.cluster.node-id:${random.uuid}}") String nodeId) {
+        return new Cluster_Fanout_Interceptor(clusterTransport, brokerChannel, nodeId);
+    }
+}
@@ -0,0 +1,72 @@
+package com.config;
+
+import com.model.Concersation_Message;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+// Backfills conversationId on messages written before the field existed.
+@Component
+@Order(1)
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "chat.migration.conversation-id.enabled", havingValue = "true", matchIfMissing = true)
+public class Conversation_Id_Migration implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query missing = Query.query(Criteria.where("conversationId").exists(false));
+        missing.fields().include("senderId").include("receiverId");
+
+        long updated = 0;
+        BulkOperations bulk = newBulk();
+        int pending = 0;
+
+        try (Stream<Document> docs = mongoTemplate.stream(missing, Document.class, "messages")) {
+            for (Document doc : (Iterable<Document>) docs::iterator) {
+                String senderId = doc.getString("senderId");
+                String receiverId = doc.getString("receiverId");
+                if (senderId == null || receiverId == null) {
+                    continue;
+                }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(doc.get("_id"))),
+                        Update.update("conversationId", Concersation_Message.conversationIdOf(senderId, receiverId)));
+                if (++pending == BATCH_SIZE) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = newBulk();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += bulk.execute().getModifiedCount();
+            }
+        } catch (Exception e) {
+            log.error("conversationId backfill stopped after {} messages: {}", updated, e.getMessage());
+            return;
+        }
+
+        if (updated > 0) {
+            log.info("Backfilled conversationId on {} messages", updated);
+        }
+    }
+
+    private BulkOperations newBulk() {
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "messages");
+    }
+}
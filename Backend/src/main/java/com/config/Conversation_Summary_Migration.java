@@ -0,0 +1,71 @@
+package com.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+// Builds the conversations collection from existing messages. The $merge keeps summaries that
+// already exist, so a rerun after a crash, or alongside live writes at startup, is harmless; a marker
+// in the migrations collection, written once the merge completes, stops it from running again.
+@Component
+@Order(2)
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "chat.migration.conversation-summaries.enabled", havingValue = "true", matchIfMissing = true)
+public class Conversation_Summary_Migration implements ApplicationRunner {
+
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER_ID = "conversation-summaries";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            Query marker = Query.query(Criteria.where("_id").is(MARKER_ID));
+            if (mongoTemplate.exists(marker, MIGRATIONS)) {
+                return;
+            }
+
+            List<Document> pipeline = List.of(
+                    new Document("$match", new Document("conversationId", new Document("$exists", true))),
+                    new Document("$sort", new Document("conversationId", 1).append("timestamp", -1)),
+                    new Document("$group", new Document("_id", "$conversationId")
+                            .append("senderId", new Document("$first", "$senderId"))
+                            .append("receiverId", new Document("$first", "$receiverId"))
+                            .append("lastMessageId", new Document("$first", new Document("$toString", "$_id")))
+                            .append("lastMessage", new Document("$first", "$message"))
+                            .append("lastTimestamp", new Document("$first", "$timestamp"))),
+                    new Document("$project", new Document("participants", new Document("$cond", List.of(
+                            new Document("$lt", List.of("$senderId", "$receiverId")),
+                            List.of("$senderId", "$receiverId"),
+                            List.of("$receiverId", "$senderId"))))
+                            .append("lastMessageId", 1)
+                            .append("lastMessage", 1)
+                            .append("lastSenderId", "$senderId")
+                            .append("lastTimestamp", 1)
+                            .append("unread", new Document())),
+                    new Document("$merge", new Document("into", "conversations")
+                            .append("whenMatched", "keepExisting")
+                            .append("whenNotMatched", "insert")));
+
+            mongoTemplate.getCollection("messages").aggregate(pipeline).allowDiskUse(true).toCollection();
+            mongoTemplate.upsert(marker, Update.update("completedAt", new Date()), MIGRATIONS);
+            log.info("Built conversation summaries from existing messages");
+        } catch (Exception e) {
+            log.error("Conversation summary backfill failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * chat.execution.mode=virtual runs Tomcat request handling and the STOMP inbound/outbound channels
+ * on virtual threads, so blocking Mongo and Firebase calls park instead of holding a pool thread.
+ * Needs Java 21+; on older runtimes it logs a warning and stays on the platform pools.
+ */
+@Configuration
+@Slf4j
+public class Execution_Config {
+
+    private final boolean virtualThreads;
+
+    public Execution_Config(@Value("${chat.execution.mode:platform}") String mode) {
+        this.virtualThreads = "virtual".equalsIgnoreCase(mode) && virtualThreadsSupported();
+        log.info("Request and STOMP channel execution on {} threads", virtualThreads ? "virtual" : "platform");
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public Executor channelExecutor(String name) {
+        return new VirtualThreadTaskExecutor(name + "-");
+    }
+
+    // virtual threads when enabled, daemon platform threads otherwise
+    public ThreadFactory threadFactory(String name) {
+        if (virtualThreads) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return handler -> {
+            if (virtualThreads) {
+                handler.setExecutor(channelExecutor("http"));
+            }
+        };
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            new VirtualThreadTaskExecutor();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            log.warn("chat.execution.mode=virtual needs Java 21+ (running {}), using platform threads",
+                    Runtime.version().feature());
+            return false;
+        }
+    }
+}
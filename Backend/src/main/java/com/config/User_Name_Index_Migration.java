@@ -0,0 +1,72 @@
+package com.config;
+
+import com.model.User;
+import com.service.UserDirectoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+// Backfills normalizedName/nameTokens on users saved before search keys existed.
+@Component
+@Order(3)
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "chat.migration.user-name-index.enabled", havingValue = "true", matchIfMissing = true)
+public class User_Name_Index_Migration implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final UserDirectoryService userDirectoryService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query missing = Query.query(Criteria.where("nameTokens").exists(false));
+        missing.fields().include("name");
+
+        long updated = 0;
+        BulkOperations bulk = newBulk();
+        int pending = 0;
+
+        try (Stream<Document> docs = mongoTemplate.stream(missing, Document.class, "users")) {
+            for (Document doc : (Iterable<Document>) docs::iterator) {
+                String name = doc.getString("name") != null ? doc.getString("name") : "";
+                bulk.updateOne(Query.query(Criteria.where("_id").is(doc.get("_id"))),
+                        new Update().set("normalizedName", User.normalize(name)).set("nameTokens", User.tokenize(name)));
+                if (++pending == BATCH_SIZE) {
+                    updated += bulk.execute().getModifiedCount();
+                    bulk = newBulk();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += bulk.execute().getModifiedCount();
+            }
+        } catch (Exception e) {
+            log.error("User name index backfill stopped after {} users: {}", updated, e.getMessage());
+            return;
+        }
+
+        if (updated > 0) {
+            // normalizedName orders the directory, so tags handed out before the backfill are stale
+            userDirectoryService.onUserChanged();
+            log.info("Backfilled search keys on {} users", updated);
+        }
+    }
+
+    private BulkOperations newBulk() {
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "users");
+    }
+}
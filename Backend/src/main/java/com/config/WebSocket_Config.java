@@ -1,23 +1,124 @@
 package com.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.websocket.Cluster_Fanout_Interceptor;
+import com.websocket.Inbound_Lane_Executor;
+import com.websocket.Outbound_Session_Policy;
+import com.websocket.Reconnect_Catch_Up;
+import com.websocket.Room_Subscription_Guard;
+import com.websocket.Stomp_Metrics;
+import com.websocket.Wire_Codec;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
+@Slf4j
 public class WebSocket_Config implements WebSocketMessageBrokerConfigurer {
 
+    private static final int INBOUND_LANES_PER_CORE = 8;
+    private static final int MIN_INBOUND_LANES = 32;
+    private static final int VIRTUAL_INBOUND_LANES = 1024;
+
     private final Firebase_Auth_Interceptor firebaseAuthInterceptor;
+    private final ObjectProvider<Cluster_Fanout_Interceptor> clusterFanoutInterceptor;
+    private final ObjectProvider<Reconnect_Catch_Up> reconnectCatchUp;
+    private final ObjectProvider<Room_Subscription_Guard> roomSubscriptionGuard;
+    private final ObjectProvider<Stomp_Metrics> stompMetrics;
+    private final ObjectMapper objectMapper;
+    private final Execution_Config executionConfig;
+    private final MeterRegistry meterRegistry;
+    private final Outbound_Session_Policy outboundSessionPolicy;
+    private final Wire_Codec wireCodec;
+
+    // simple | relay | cluster
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${chat.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${chat.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    @Value("${chat.inbound.lanes.enabled:true}")
+    private boolean inboundLanes;
+
+    @Value("${chat.inbound.lanes.count:0}")
+    private int inboundLaneCount;
+
+    @Value("${chat.inbound.lanes.capacity:1000}")
+    private int inboundLaneCapacity;
+
+    @Value("${chat.inbound.lanes.offer-timeout-ms:2000}")
+    private long inboundOfferTimeoutMs;
+
+    @Value("${chat.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${chat.websocket.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs;
+
+    @Value("${chat.websocket.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    private Inbound_Lane_Executor inboundLaneExecutor;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/user");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // lets /user/** destinations resolve sessions that are connected to other nodes
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isEmpty()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            log.info("STOMP broker relay to {}:{}", relayHost, relayPort);
+        } else {
+            // /user/** is resolved to per-session /queue destinations by the user destination handler, not
+            // kept as a broker destination: a raw /user SUBSCRIBE would take the subscription id first
+            config.enableSimpleBroker("/topic", "/queue");
+
+            Cluster_Fanout_Interceptor fanout = clusterFanoutInterceptor.getIfAvailable();
+            if (fanout != null) {
+                config.configureBrokerChannel().interceptors(fanout);
+            }
+        }
+
+        // keep messages to one session in send order even when the outbound channel runs in parallel
+        config.setPreservePublishOrder(true);
 
         config.setApplicationDestinationPrefixes("/app");
 
@@ -26,6 +127,9 @@ public class WebSocket_Config implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // lanes already keep each session's frames in order; otherwise let Spring serialize them
+        registry.setPreserveReceiveOrder(!inboundLanes);
+
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*") 
                 .addInterceptors(firebaseAuthInterceptor)
@@ -38,6 +142,63 @@ public class WebSocket_Config implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(firebaseAuthInterceptor);
+        // first, so frames rejected by a later interceptor are still counted
+        stompMetrics.ifAvailable(registration::interceptors);
+        registration.interceptors(firebaseAuthInterceptor, wireCodec);
+        reconnectCatchUp.ifAvailable(registration::interceptors);
+        roomSubscriptionGuard.ifAvailable(registration::interceptors);
+        if (inboundLanes) {
+            int lanes = inboundLaneCount > 0 ? inboundLaneCount : defaultInboundLaneCount();
+            inboundLaneExecutor = new Inbound_Lane_Executor(lanes, inboundLaneCapacity, inboundOfferTimeoutMs,
+                    executionConfig.threadFactory("stomp-inbound-lane"), meterRegistry);
+            registration.executor(inboundLaneExecutor);
+            log.info("STOMP inbound frames on {} per-session lanes", lanes);
+        } else if (executionConfig.isVirtualThreads()) {
+            registration.executor(executionConfig.channelExecutor("stomp-inbound"));
+        }
+    }
+
+    // lanes block on Mongo, so size for blocking I/O rather than for cores
+    private int defaultInboundLaneCount() {
+        if (executionConfig.isVirtualThreads()) {
+            return VIRTUAL_INBOUND_LANES;
+        }
+        return Math.max(MIN_INBOUND_LANES, Runtime.getRuntime().availableProcessors() * INBOUND_LANES_PER_CORE);
+    }
+
+    @PreDestroy
+    public void stopInboundLanes() {
+        if (inboundLaneExecutor != null) {
+            inboundLaneExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(outboundSessionPolicy);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // room frames for removed members are dropped before the policy counts them
+        roomSubscriptionGuard.ifAvailable(registration::interceptors);
+        // transcode only what the policy lets through
+        registration.interceptors(outboundSessionPolicy, wireCodec);
+        if (executionConfig.isVirtualThreads()) {
+            registration.executor(executionConfig.channelExecutor("stomp-outbound"));
+        }
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // frames sent with content-type:application/cbor are decoded as CBOR; everything else stays JSON
+        MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(Wire_Codec.APPLICATION_CBOR);
+        cbor.setObjectMapper(Wire_Codec.cborMapper(objectMapper));
+        cbor.setStrictContentTypeMatch(true);
+        messageConverters.add(cbor);
+        return true;
     }
-}
\ No newline at end of file
+}
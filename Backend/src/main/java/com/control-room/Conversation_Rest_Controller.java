@@ -1,13 +1,31 @@
+package com.controller;
+
+import com.model.Chat_History_Page;
 import com.model.Concersation_Message;
-import com.service.FirebaseNotificationService;
+import com.model.Conversation_Page;
+import com.service.ConversationSummaryService;
+import com.service.MessageExportWriter;
 import com.service.MessageService;
+import com.service.NotificationDispatcher;
+import com.websocket.Presence_Registry;
 import com.websocket.WebSocket_Chat_Controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.CompositeHealth;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -18,16 +36,48 @@ public class Conversation_Rest_Controller {
 
     private final WebSocket_Chat_Controller webSocketController;
     private final MessageService messageService;
-    private final FirebaseNotificationService firebaseNotificationService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final Presence_Registry presenceRegistry;
+    private final ConversationSummaryService conversationSummaryService;
+    private final MessageExportWriter exportWriter;
+    private final HealthEndpoint healthEndpoint;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.persistence.mode:sync}")
+    private String persistenceMode;
+
+    @Value("${chat.execution.mode:platform}")
+    private String executionMode;
+
+    @Value("${chat.export.max-list-size:1000}")
+    private int maxListSize;
 
     @GetMapping("/history")
-    public ResponseEntity<List<Concersation_Message>> getChatHistory(
+    public ResponseEntity<?> getChatHistory(
             @RequestParam String user1,
-            @RequestParam String user2) {
+            @RequestParam String user2,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         try {
-            log.debug("Fetching chat history between {} and {}", user1, user2);
-            List<Concersation_Message> messages = messageService.getChatHistory(user1, user2);
-            return ResponseEntity.ok(messages);
+            if (MessageExportWriter.isStreaming(format)) {
+                log.debug("Streaming chat history between {} and {} as {} (from={}, to={})", user1, user2, format, from, to);
+                messageService.checkRange(from, to);
+                return ResponseEntity.ok()
+                        .contentType(MessageExportWriter.mediaTypeOf(format))
+                        .body(exportWriter.write(format, () -> messageService.streamChatHistory(user1, user2, from, to)));
+            }
+            log.debug("Fetching chat history between {} and {} (before={}, after={})", user1, user2, before, after);
+            Chat_History_Page page = messageService.getChatHistoryPage(user1, user2, before, after, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid chat history request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching chat history: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
@@ -48,6 +98,41 @@ public class Conversation_Rest_Controller {
         }
     }
 
+    @GetMapping("/conversations")
+    public ResponseEntity<Conversation_Page> getConversations(
+            @RequestParam String userId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            log.debug("Fetching conversations for {} (before={})", userId, before);
+            return ResponseEntity.ok(conversationSummaryService.getConversations(userId, before, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid conversations request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error fetching conversations: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/conversations/{conversationId}/read")
+    public ResponseEntity<Void> markConversationRead(
+            @PathVariable String conversationId,
+            @RequestParam String userId,
+            @RequestParam(required = false) Long upToSeq) {
+        try {
+            if (upToSeq != null) {
+                conversationSummaryService.markRead(conversationId, userId, upToSeq);
+            } else {
+                conversationSummaryService.markRead(conversationId, userId);
+            }
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            log.error("Error marking conversation {} read: {}", conversationId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @PostMapping("/send")
     public ResponseEntity<Concersation_Message> sendMessage(@RequestBody Map<String, String> messageData) {
         try {
@@ -74,12 +159,12 @@ public class Conversation_Rest_Controller {
 
             try {
                 String senderName = messageData.get("senderName");
-                firebaseNotificationService.sendPushNotification(
+                notificationDispatcher.submit(
                         receiverId,
                         senderId,
                         messageContent,
                         senderName);
-                log.debug("Firebase push notification triggered successfully");
+                log.debug("Firebase push notification queued");
             } catch (Exception e) {
                 log.warn("Failed to send push notification: {}", e.getMessage());
             }
@@ -93,11 +178,30 @@ public class Conversation_Rest_Controller {
     }
 
     @GetMapping("/sent/{userId}")
-    public ResponseEntity<List<Concersation_Message>> getMessagesBySender(@PathVariable String userId) {
+    public ResponseEntity<?> getMessagesBySender(
+            @PathVariable String userId,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         try {
+            if (MessageExportWriter.isStreaming(format)) {
+                log.debug("Streaming messages sent by user {} as {} (from={}, to={})", userId, format, from, to);
+                messageService.checkRange(from, to);
+                return ResponseEntity.ok()
+                        .contentType(MessageExportWriter.mediaTypeOf(format))
+                        .body(exportWriter.write(format, () -> messageService.streamMessagesBySender(userId, from, to)));
+            }
             log.debug("Fetching messages sent by user {}", userId);
+            if (from != null || to != null) {
+                try (Stream<Concersation_Message> messages = messageService.streamMessagesBySender(userId, from, to)) {
+                    return cappedList(messages);
+                }
+            }
             List<Concersation_Message> messages = messageService.getMessagesBySender(userId);
             return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid message export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching messages by sender: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
@@ -105,34 +209,85 @@ public class Conversation_Rest_Controller {
     }
 
     @GetMapping("/received/{userId}")
-    public ResponseEntity<List<Concersation_Message>> getMessagesByReceiver(@PathVariable String userId) {
+    public ResponseEntity<?> getMessagesByReceiver(
+            @PathVariable String userId,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
         try {
+            if (MessageExportWriter.isStreaming(format)) {
+                log.debug("Streaming messages received by user {} as {} (from={}, to={})", userId, format, from, to);
+                messageService.checkRange(from, to);
+                return ResponseEntity.ok()
+                        .contentType(MessageExportWriter.mediaTypeOf(format))
+                        .body(exportWriter.write(format, () -> messageService.streamMessagesByReceiver(userId, from, to)));
+            }
             log.debug("Fetching messages received by user {}", userId);
+            if (from != null || to != null) {
+                try (Stream<Concersation_Message> messages = messageService.streamMessagesByReceiver(userId, from, to)) {
+                    return cappedList(messages);
+                }
+            }
             List<Concersation_Message> messages = messageService.getMessagesByReceiver(userId);
             return ResponseEntity.ok(messages);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid message export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error fetching messages by receiver: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    @GetMapping("/info")
-    public ResponseEntity<Map<String, String>> getSystemInfo() {
+    // ranged requests without a streaming format stay bounded; X-Has-More tells the client to use format=ndjson
+    private ResponseEntity<List<Concersation_Message>> cappedList(Stream<Concersation_Message> messages) {
+        List<Concersation_Message> found = messages.limit(maxListSize + 1L).toList();
+        boolean hasMore = found.size() > maxListSize;
+        return ResponseEntity.ok()
+                .header("X-Has-More", String.valueOf(hasMore))
+                .body(hasMore ? found.subList(0, maxListSize) : found);
+    }
+
+    @GetMapping("/presence")
+    public ResponseEntity<Map<String, Object>> getPresenceSnapshot() {
+        List<String> online = presenceRegistry.onlineUsers();
         return ResponseEntity.ok(Map.of(
-                "service", "chat-app project Backend",
-                "version", "1.0.0",
-                "status", "running",
-                "database", "MongoDB",
-                "websocket", "enabled",
-                "firebase-functions", "enabled",
-                "timestamp", String.valueOf(System.currentTimeMillis())));
+                "online", online,
+                "count", online.size(),
+                "timestamp", System.currentTimeMillis()));
+    }
+
+    @GetMapping("/info")
+    public ResponseEntity<Map<String, Object>> getSystemInfo() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("service", "chat-app project Backend");
+        info.put("version", "1.0.0");
+        info.put("status", "running");
+        info.put("database", "MongoDB");
+        info.put("broker", brokerMode);
+        info.put("persistence", persistenceMode);
+        info.put("execution", executionMode);
+        info.put("uptimeMs", ManagementFactory.getRuntimeMXBean().getUptime());
+        info.put("websocket", webSocketController.getConnectionStats());
+        info.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        return ResponseEntity.ok(info);
     }
 
+    // same checks as /actuator/health (MongoDB, disk, ...), in this API's response shape
     @GetMapping("/health")
-    public ResponseEntity<Map<String, String>> healthCheck() {
-        return ResponseEntity.ok(Map.of(
-                "status", "healthy",
-                "service", "chat-api",
-                "timestamp", String.valueOf(System.currentTimeMillis())));
+    public ResponseEntity<Map<String, Object>> healthCheck() {
+        HealthComponent health = healthEndpoint.health();
+        boolean up = Status.UP.equals(health.getStatus());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", up ? "healthy" : "unhealthy");
+        body.put("service", "chat-api");
+        if (health instanceof CompositeHealth composite) {
+            Map<String, String> components = new LinkedHashMap<>();
+            composite.getComponents().forEach((name, component) -> components.put(name, component.getStatus().getCode()));
+            body.put("components", components);
+        }
+        body.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        return up ? ResponseEntity.ok(body) : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(body);
     }
 }
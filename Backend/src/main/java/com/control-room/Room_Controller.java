@@ -0,0 +1,101 @@
+package com.controller;
+
+import com.model.Chat_Room;
+import com.model.Room_Message;
+import com.model.Room_Request;
+import com.service.RoomService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/rooms")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class Room_Controller {
+
+    private final RoomService roomService;
+
+    @PostMapping
+    public ResponseEntity<Chat_Room> createRoom(@RequestBody Room_Request request) {
+        try {
+            return ResponseEntity.ok(roomService.createRoom(request));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid room request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error creating room: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Chat_Room>> getRooms(@RequestParam String userId) {
+        try {
+            log.debug("Fetching rooms for {}", userId);
+            return ResponseEntity.ok(roomService.getRoomsForUser(userId));
+        } catch (Exception e) {
+            log.error("Error fetching rooms for {}: {}", userId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/{roomId}")
+    public ResponseEntity<Chat_Room> getRoom(@PathVariable String roomId) {
+        try {
+            return roomService.getRoom(roomId)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            log.error("Error fetching room {}: {}", roomId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/{roomId}/members")
+    public ResponseEntity<Chat_Room> addMembers(@PathVariable String roomId, @RequestBody Room_Request request) {
+        try {
+            return roomService.addMembers(roomId, request.memberIds())
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid member request for room {}: {}", roomId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error adding members to room {}: {}", roomId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/{roomId}/members/{userId}")
+    public ResponseEntity<Void> removeMember(@PathVariable String roomId, @PathVariable String userId) {
+        try {
+            return roomService.removeMember(roomId, userId)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error removing {} from room {}: {}", userId, roomId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/{roomId}/messages")
+    public ResponseEntity<List<Room_Message>> getRecentMessages(
+            @PathVariable String roomId,
+            @RequestParam String userId,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(roomService.getRecentMessages(roomId, userId, limit));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid room history request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error fetching messages for room {}: {}", roomId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
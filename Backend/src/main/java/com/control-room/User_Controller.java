@@ -1,9 +1,20 @@
 package com.controller;
 
+import com.google.firebase.auth.FirebaseAuthException;
 import com.model.User;
+import com.model.User_Page;
+import com.model.User_Save_Result;
 import com.repository.User_Repo;
+import com.service.FirebaseTokenService;
+import com.service.UserDirectoryService;
+import com.service.UserProfileCache;
+import com.service.UserSearchService;
+import com.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,30 +30,60 @@ public class User_Controller {
     @Autowired
     private User_Repo userRepository;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private UserDirectoryService userDirectoryService;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private FirebaseTokenService firebaseTokenService;
+
+    @Value("${chat.users.batch.max-ids:500}")
+    private int maxBatchIds;
+
     @PostMapping
     public ResponseEntity<User> saveUser(@RequestBody User user) {
         try {
             log.info("Saving user: {}", user.getEmail());
 
-            Optional<User> existingUser = userRepository.findById(user.getUid());
+            User_Save_Result result = userService.saveUser(user);
+            log.info("User {} save result: {}", user.getUid(), result.getOutcome());
+            return ResponseEntity.ok()
+                    .header("X-User-Save-Result", result.getOutcome().name().toLowerCase())
+                    .body(result.getUser());
 
-            if (existingUser.isPresent()) {
-                User existing = existingUser.get();
-                existing.setName(user.getName());
-                existing.setPhotoURL(user.getPhotoURL());
-                existing.setProvider(user.getProvider());
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid user save request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error saving user: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-                User savedUser = userRepository.save(existing);
-                log.info("Updated existing user: {}", savedUser.getUid());
-                return ResponseEntity.ok(savedUser);
-            } else {
-                User savedUser = userRepository.save(user);
-                log.info("Saved new user: {}", savedUser.getUid());
-                return ResponseEntity.ok(savedUser);
-            }
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestParam(defaultValue = "false") boolean everywhere) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            firebaseTokenService.signOut(authorization.substring(7), everywhere);
+            return ResponseEntity.noContent().build();
 
+        } catch (FirebaseAuthException e) {
+            log.warn("Logout with an invalid token: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         } catch (Exception e) {
-            log.error("Error saving user: {}", e.getMessage(), e);
+            log.error("Error during logout: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -68,6 +109,58 @@ public class User_Controller {
         }
     }
 
+    @GetMapping("/directory")
+    public ResponseEntity<User_Page> getDirectory(
+            @RequestParam(required = false) String excludeUserId,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            // read the version before querying so a concurrent write yields a stale tag, never a stale body under a fresh one
+            String etag = userDirectoryService.etag();
+            if (userDirectoryService.matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+
+            User_Page page = userDirectoryService.getPage(excludeUserId, after, limit);
+            return ResponseEntity.ok().eTag(etag).body(page);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid directory request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error retrieving user directory: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<User>> searchUsers(
+            @RequestParam String query,
+            @RequestParam(required = false) String excludeUserId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        try {
+            log.debug("Searching users for '{}', excluding: {}", query, excludeUserId);
+            User_Page found = userSearchService.search(query, excludeUserId, page, size);
+
+            // body stays a plain array for existing clients; paging travels in headers
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .header("X-Has-More", String.valueOf(found.isHasMore()));
+            if (found.getNextCursor() != null) {
+                response.header("X-Next-Page", found.getNextCursor());
+            }
+            return response.body(found.getUsers());
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid user search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error searching users: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/test")
     public ResponseEntity<String> test() {
         try {
@@ -79,11 +172,28 @@ public class User_Controller {
         }
     }
 
+    @GetMapping("/batch")
+    public ResponseEntity<List<User>> getUsersByIds(@RequestParam List<String> ids) {
+        try {
+            if (ids.size() > maxBatchIds) {
+                log.warn("Batch lookup of {} users exceeds limit {}", ids.size(), maxBatchIds);
+                return ResponseEntity.badRequest().build();
+            }
+            List<User> users = userProfileCache.getAll(ids);
+            log.debug("Batch lookup resolved {} of {} users", users.size(), ids.size());
+            return ResponseEntity.ok(users);
+
+        } catch (Exception e) {
+            log.error("Error retrieving users by ids: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/{userId}")
     public ResponseEntity<User> getUserById(@PathVariable String userId) {
         try {
             log.info("Getting user by ID: {}", userId);
-            Optional<User> user = userRepository.findById(userId);
+            Optional<User> user = userProfileCache.get(userId);
 
             if (user.isPresent()) {
                 return ResponseEntity.ok(user.get());
@@ -0,0 +1,6 @@
+package com.model;
+
+// Inbound /app/ack frame: "readerId has delivered/read everything up to upToSeq in conversationId".
+// upToSeq is the receiverSeq of the newest acknowledged message; messageId is echoed to the sender.
+public record Ack_Frame(String readerId, String conversationId, long upToSeq, String messageId, String type) {
+}
@@ -0,0 +1,7 @@
+package com.model;
+
+import java.util.List;
+
+// One chunk of missed messages; lastSeq is what the client should send as last-seq next time.
+public record Catch_Up_Batch(List<Concersation_Message> messages, long lastSeq, boolean done, boolean truncated) {
+}
@@ -0,0 +1,5 @@
+package com.model;
+
+// Inbound /app/chat frame; a roomId sends to that room and receiverId is ignored
+public record Chat_Frame(String senderId, String receiverId, String message, String senderName, String roomId) {
+}
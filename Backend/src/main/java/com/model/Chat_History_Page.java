@@ -0,0 +1,25 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Chat_History_Page {
+
+    // oldest -> newest
+    private List<Concersation_Message> messages;
+
+    // pass as ?before= to load older messages
+    private String beforeCursor;
+
+    // pass as ?after= to poll for newer messages
+    private String afterCursor;
+
+    // more messages exist in the direction that was requested
+    private boolean hasMore;
+}
@@ -0,0 +1,28 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "rooms")
+public class Chat_Room {
+
+    @Id
+    private String id;
+
+    private String name;
+
+    private String createdBy;
+
+    private LocalDateTime createdAt;
+
+    // kept in step with room_members by RoomService
+    private int memberCount;
+}
@@ -5,6 +5,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -14,11 +16,21 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Document(collection = "messages")
 @TypeAlias("Message")
+@CompoundIndexes({
+        @CompoundIndex(name = "conversation_timestamp_id", def = "{ 'conversationId': 1, 'timestamp': -1, '_id': -1 }"),
+        @CompoundIndex(name = "sender_timestamp", def = "{ 'senderId': 1, 'timestamp': -1 }"),
+        @CompoundIndex(name = "receiver_timestamp", def = "{ 'receiverId': 1, 'timestamp': -1 }"),
+        @CompoundIndex(name = "sender_seq", def = "{ 'senderId': 1, 'senderSeq': 1 }"),
+        @CompoundIndex(name = "receiver_seq", def = "{ 'receiverId': 1, 'receiverSeq': 1 }"),
+        @CompoundIndex(name = "conversation_receiver_seq", def = "{ 'conversationId': 1, 'receiverId': 1, 'receiverSeq': 1 }")
+})
 public class Concersation_Message {
 
     @Id
     private String id;
 
+    private String conversationId;
+
     private String senderId;
 
     private String receiverId;
@@ -27,10 +39,29 @@ public class Concersation_Message {
 
     private LocalDateTime timestamp;
 
+    // positions in the sender's and receiver's delivery streams (equal for a self-chat)
+    private Long senderSeq;
+
+    private Long receiverSeq;
+
+    // set in bulk from /app/ack receipts
+    private LocalDateTime deliveredAt;
+
+    private LocalDateTime readAt;
+
     public Concersation_Message(String senderId, String receiverId, String message) {
+        this.conversationId = conversationIdOf(senderId, receiverId);
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.message = message;
         this.timestamp = LocalDateTime.now();
     }
-}
\ No newline at end of file
+
+    public Long seqFor(String userId) {
+        return userId.equals(receiverId) ? receiverSeq : senderSeq;
+    }
+
+    public static String conversationIdOf(String u1, String u2) {
+        return u1.compareTo(u2) < 0 ? u1 + "_" + u2 : u2 + "_" + u1;
+    }
+}
@@ -0,0 +1,21 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Conversation_Page {
+
+    // most recently active first
+    private List<Conversation_Summary> conversations;
+
+    // pass as ?before= to load the next page
+    private String nextCursor;
+
+    private boolean hasMore;
+}
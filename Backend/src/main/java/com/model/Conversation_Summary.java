@@ -0,0 +1,40 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "conversations")
+@CompoundIndex(name = "participant_last_timestamp", def = "{ 'participants': 1, 'lastTimestamp': -1, '_id': -1 }")
+public class Conversation_Summary {
+
+    // same value as Concersation_Message.conversationId
+    @Id
+    private String id;
+
+    private List<String> participants;
+
+    private String lastMessageId;
+
+    private String lastMessage;
+
+    private String lastSenderId;
+
+    private LocalDateTime lastTimestamp;
+
+    // uid -> messages that user has not read yet; a missing uid means 0
+    private Map<String, Integer> unread;
+
+    // bumped by every message recorded into the summary; read-receipt recounts are guarded on it
+    private long version;
+}
@@ -0,0 +1,40 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+@Data
+@AllArgsConstructor
+public class Message_Cursor {
+
+    private LocalDateTime timestamp;
+
+    private String id;
+
+    public static Message_Cursor of(Concersation_Message msg) {
+        return new Message_Cursor(msg.getTimestamp(), msg.getId());
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Message_Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.indexOf('|');
+            if (split <= 0 || split == raw.length() - 1) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new Message_Cursor(LocalDateTime.parse(raw.substring(0, split)), raw.substring(split + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid history cursor: " + cursor, e);
+        }
+    }
+}
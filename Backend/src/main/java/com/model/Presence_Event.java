@@ -0,0 +1,10 @@
+package com.model;
+
+// Outbound /topic/user-status event; timestamp is epoch millis. version only grows, so a client keeps
+// the highest version seen per user and drops anything older that arrives late.
+public record Presence_Event(String userId, String status, String action, long version, long timestamp) {
+
+    public static Presence_Event of(String userId, String status, String action, long version) {
+        return new Presence_Event(userId, status, action, version, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,5 @@
+package com.model;
+
+// Outbound /user/{sender}/queue/receipts event, one per conversation and reader per flush; timestamp is epoch millis
+public record Receipt_Event(String conversationId, String readerId, String type, long upToSeq, String messageId, long timestamp) {
+}
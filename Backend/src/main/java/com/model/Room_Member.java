@@ -0,0 +1,37 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "room_members")
+@CompoundIndexes({
+        @CompoundIndex(name = "room_user", def = "{ 'roomId': 1, 'userId': 1 }", unique = true),
+        @CompoundIndex(name = "user_joined", def = "{ 'userId': 1, 'joinedAt': -1 }")
+})
+public class Room_Member {
+
+    @Id
+    private String id;
+
+    private String roomId;
+
+    private String userId;
+
+    private LocalDateTime joinedAt;
+
+    public Room_Member(String roomId, String userId) {
+        this.roomId = roomId;
+        this.userId = userId;
+        this.joinedAt = LocalDateTime.now();
+    }
+}
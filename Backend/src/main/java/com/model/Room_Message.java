@@ -0,0 +1,39 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "room_messages")
+@CompoundIndex(name = "room_timestamp_id", def = "{ 'roomId': 1, 'timestamp': -1, '_id': -1 }")
+public class Room_Message {
+
+    @Id
+    private String id;
+
+    private String roomId;
+
+    private String senderId;
+
+    private String senderName;
+
+    private String message;
+
+    private LocalDateTime timestamp;
+
+    public Room_Message(String roomId, String senderId, String senderName, String message) {
+        this.roomId = roomId;
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.message = message;
+        this.timestamp = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,7 @@
+package com.model;
+
+import java.util.List;
+
+// POST /api/rooms and /api/rooms/{id}/members bodies; name and createdBy only matter on create
+public record Room_Request(String name, String createdBy, List<String> memberIds) {
+}
@@ -0,0 +1,5 @@
+package com.model;
+
+// Inbound /app/status, /app/join, /app/connect and /app/disconnect frame
+public record Status_Frame(String userId, String status, String action) {
+}
@@ -0,0 +1,9 @@
+package com.model;
+
+// Outbound /user/{uid}/queue/system event; timestamp is epoch millis
+public record System_Event(String type, String message, long timestamp) {
+
+    public static System_Event of(String type, String message) {
+        return new System_Event(type, message, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,5 @@
+package com.model;
+
+// Inbound /app/typing frame, also forwarded as-is to /user/{receiver}/queue/typing
+public record Typing_Frame(String senderId, String receiverId, boolean isTyping) {
+}
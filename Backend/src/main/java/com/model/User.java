@@ -1,14 +1,27 @@
 package com.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.Generated;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 @Data
 @Document(collection = "users")
+@CompoundIndex(name = "directory_order", def = "{ 'normalizedName': 1, '_id': 1 }")
 public class User {
 
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
     @Id
     @Generated
     private String uid;
@@ -17,4 +30,33 @@ public class User {
     private String name;
     private String photoURL;
     private String provider;
+
+    // search keys derived from name; kept in step by setName and never sent to clients
+    @JsonIgnore
+    private String normalizedName;
+
+    @JsonIgnore
+    @Indexed
+    private List<String> nameTokens;
+
+    public void setName(String name) {
+        this.name = name;
+        this.normalizedName = name == null ? "" : normalize(name);
+        this.nameTokens = name == null ? List.of() : tokenize(name);
+    }
+
+    public static String normalize(String text) {
+        String stripped = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : normalize(text).split(" ")) {
+            if (!token.isEmpty() && !tokens.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
 }
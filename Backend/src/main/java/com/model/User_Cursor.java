@@ -0,0 +1,39 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@Data
+@AllArgsConstructor
+public class User_Cursor {
+
+    private String normalizedName;
+
+    private String uid;
+
+    public static User_Cursor of(User user) {
+        return new User_Cursor(user.getNormalizedName(), user.getUid());
+    }
+
+    public String encode() {
+        // normalized names never contain '|', so the first one splits name from uid
+        String raw = normalizedName + "|" + uid;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static User_Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = raw.indexOf('|');
+            if (split < 0 || split == raw.length() - 1) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new User_Cursor(raw.substring(0, split), raw.substring(split + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid directory cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class User_Page {
+
+    private List<User> users;
+
+    // opaque; pass back to load the next page
+    private String nextCursor;
+
+    private boolean hasMore;
+}
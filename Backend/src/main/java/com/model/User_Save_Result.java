@@ -0,0 +1,15 @@
+package com.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class User_Save_Result {
+
+    public enum Outcome { CREATED, UPDATED, UNCHANGED }
+
+    private User user;
+
+    private Outcome outcome;
+}
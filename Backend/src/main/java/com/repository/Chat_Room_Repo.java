@@ -0,0 +1,9 @@
+package com.repository;
+
+import com.model.Chat_Room;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface Chat_Room_Repo extends MongoRepository<Chat_Room, String> {
+}
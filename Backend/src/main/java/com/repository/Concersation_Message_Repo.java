@@ -1,5 +1,6 @@
 package com.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -8,17 +9,14 @@ import com.model.Concersation_Message;
 import java.util.List;
 
 @Repository
-public interface Concersation_Message_Repo extends MongoRepository<Concersation_Message, String> {
+public interface Concersation_Message_Repo extends MongoRepository<Concersation_Message, String>, Concersation_Message_Repo_Custom {
 
-    @Query("{ $or: [ { $and: [ { 'senderId': ?0 }, { 'receiverId': ?1 } ] }, { $and: [ { 'senderId': ?1 }, { 'receiverId': ?0 } ] } ] }")
-    List<Concersation_Message> findMessagesBetweenUsers(String userId1, String userId2);
- 
     List<Concersation_Message> findBySenderIdOrderByTimestampDesc(String senderId);
 
     List<Concersation_Message> findByReceiverIdOrderByTimestampDesc(String receiverId);
 
-     
-    @Query(value = "{ $or: [ { $and: [ { 'senderId': ?0 }, { 'receiverId': ?1 } ] }, { $and: [ { 'senderId': ?1 }, { 'receiverId': ?0 } ] } ] }",
-           sort = "{ 'timestamp': -1 }")
-    List<Concersation_Message> findRecentMessagesBetweenUsers(String userId1, String userId2);
+    @Query(value = "{ 'conversationId': ?0 }",
+           fields = "{ 'conversationId': 1, 'senderId': 1, 'receiverId': 1, 'message': 1, 'timestamp': 1, 'senderSeq': 1, 'receiverSeq': 1, 'deliveredAt': 1, 'readAt': 1 }",
+           sort = "{ 'timestamp': -1, '_id': -1 }")
+    List<Concersation_Message> findRecentMessagesInConversation(String conversationId, Limit limit);
 }
@@ -0,0 +1,28 @@
+package com.repository;
+
+import com.model.Concersation_Message;
+import com.model.Message_Cursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface Concersation_Message_Repo_Custom {
+
+    // newest first, strictly older than the cursor (or the latest messages when cursor is null)
+    List<Concersation_Message> findPageBefore(String conversationId, Message_Cursor cursor, int limit);
+
+    // oldest first, strictly newer than the cursor
+    List<Concersation_Message> findPageAfter(String conversationId, Message_Cursor cursor, int limit);
+
+    // cursor-backed streams for exports; from/to are inclusive and may be null. Callers must close the stream.
+    Stream<Concersation_Message> streamBySender(String senderId, LocalDateTime from, LocalDateTime to);
+
+    Stream<Concersation_Message> streamByReceiver(String receiverId, LocalDateTime from, LocalDateTime to);
+
+    // oldest first
+    Stream<Concersation_Message> streamConversation(String conversationId, LocalDateTime from, LocalDateTime to);
+
+    // the user's sent and received messages with a delivery sequence above afterSeq, lowest first
+    List<Concersation_Message> findForUserAfterSeq(String userId, long afterSeq, int limit);
+}
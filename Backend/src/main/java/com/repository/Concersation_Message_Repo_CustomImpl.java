@@ -0,0 +1,113 @@
+package com.repository;
+
+import com.model.Concersation_Message;
+import com.model.Message_Cursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class Concersation_Message_Repo_CustomImpl implements Concersation_Message_Repo_Custom {
+
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Concersation_Message> findPageBefore(String conversationId, Message_Cursor cursor, int limit) {
+        Criteria criteria = cursor == null
+                ? inConversation(conversationId)
+                : new Criteria().andOperator(inConversation(conversationId), olderThan(cursor));
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Concersation_Message.class);
+    }
+
+    @Override
+    public List<Concersation_Message> findPageAfter(String conversationId, Message_Cursor cursor, int limit) {
+        Query query = Query.query(new Criteria().andOperator(inConversation(conversationId), newerThan(cursor)))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Concersation_Message.class);
+    }
+
+    @Override
+    public Stream<Concersation_Message> streamBySender(String senderId, LocalDateTime from, LocalDateTime to) {
+        return stream(Criteria.where("senderId").is(senderId), from, to, Sort.Direction.DESC);
+    }
+
+    @Override
+    public Stream<Concersation_Message> streamByReceiver(String receiverId, LocalDateTime from, LocalDateTime to) {
+        return stream(Criteria.where("receiverId").is(receiverId), from, to, Sort.Direction.DESC);
+    }
+
+    @Override
+    public Stream<Concersation_Message> streamConversation(String conversationId, LocalDateTime from, LocalDateTime to) {
+        return stream(inConversation(conversationId), from, to, Sort.Direction.ASC);
+    }
+
+    @Override
+    public List<Concersation_Message> findForUserAfterSeq(String userId, long afterSeq, int limit) {
+        Query received = Query.query(Criteria.where("receiverId").is(userId).and("receiverSeq").gt(afterSeq))
+                .with(Sort.by(Sort.Direction.ASC, "receiverSeq"))
+                .limit(limit);
+        // self-chats are already in the received range
+        Query sent = Query.query(Criteria.where("senderId").is(userId).and("senderSeq").gt(afterSeq)
+                        .and("receiverId").ne(userId))
+                .with(Sort.by(Sort.Direction.ASC, "senderSeq"))
+                .limit(limit);
+
+        List<Concersation_Message> merged = new ArrayList<>(mongoTemplate.find(received, Concersation_Message.class));
+        merged.addAll(mongoTemplate.find(sent, Concersation_Message.class));
+        merged.sort(Comparator.comparing(msg -> msg.seqFor(userId)));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    private Stream<Concersation_Message> stream(Criteria criteria, LocalDateTime from, LocalDateTime to, Sort.Direction direction) {
+        if (from != null || to != null) {
+            Criteria range = Criteria.where("timestamp");
+            if (from != null) {
+                range = range.gte(from);
+            }
+            if (to != null) {
+                range = range.lte(to);
+            }
+            criteria = new Criteria().andOperator(criteria, range);
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(direction, "timestamp", "_id"))
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        return mongoTemplate.stream(query, Concersation_Message.class);
+    }
+
+    private Criteria inConversation(String conversationId) {
+        return Criteria.where("conversationId").is(conversationId);
+    }
+
+    private Criteria olderThan(Message_Cursor cursor) {
+        return new Criteria().orOperator(
+                Criteria.where("timestamp").lt(cursor.getTimestamp()),
+                Criteria.where("timestamp").is(cursor.getTimestamp()).and("_id").lt(idValue(cursor.getId())));
+    }
+
+    private Criteria newerThan(Message_Cursor cursor) {
+        return new Criteria().orOperator(
+                Criteria.where("timestamp").gt(cursor.getTimestamp()),
+                Criteria.where("timestamp").is(cursor.getTimestamp()).and("_id").gt(idValue(cursor.getId())));
+    }
+
+    private Object idValue(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
@@ -0,0 +1,14 @@
+package com.repository;
+
+import com.model.Room_Message;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface Room_Message_Repo extends MongoRepository<Room_Message, String> {
+
+    List<Room_Message> findByRoomIdOrderByTimestampDescIdDesc(String roomId, Pageable pageable);
+}
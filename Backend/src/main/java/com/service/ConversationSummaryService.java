@@ -0,0 +1,191 @@
+package com.service;
+
+import com.model.Concersation_Message;
+import com.model.Conversation_Page;
+import com.model.Conversation_Summary;
+import com.model.Message_Cursor;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Slf4j
+public class ConversationSummaryService {
+
+    private static final int RECOUNT_ATTEMPTS = 5;
+
+    private final MongoTemplate mongoTemplate;
+    private final int previewLength;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public ConversationSummaryService(MongoTemplate mongoTemplate,
+                                      @Value("${chat.conversations.preview-length:120}") int previewLength,
+                                      @Value("${chat.conversations.page-size:20}") int defaultPageSize,
+                                      @Value("${chat.conversations.max-page-size:100}") int maxPageSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.previewLength = previewLength;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public void recordMessage(Concersation_Message msg) {
+        recordMessages(List.of(msg));
+    }
+
+    /**
+     * One update per conversation in the batch: the newest message becomes the last-message fields
+     * only if the stored summary is older, and the receivers' unread counters are bumped either way.
+     * Writes land out of order across nodes and batches, so the filter keeps an older message from
+     * overwriting a newer preview.
+     */
+    public void recordMessages(List<Concersation_Message> messages) {
+        Map<String, List<Concersation_Message>> byConversation = new LinkedHashMap<>();
+        for (Concersation_Message msg : messages) {
+            byConversation.computeIfAbsent(msg.getConversationId(), id -> new ArrayList<>()).add(msg);
+        }
+        byConversation.forEach(this::recordConversation);
+    }
+
+    private void recordConversation(String conversationId, List<Concersation_Message> messages) {
+        Concersation_Message newest = messages.get(0);
+        Map<String, Integer> unread = new HashMap<>();
+        for (Concersation_Message msg : messages) {
+            if (isNewer(msg, newest)) {
+                newest = msg;
+            }
+            if (!msg.getSenderId().equals(msg.getReceiverId())) {
+                unread.merge(msg.getReceiverId(), 1, Integer::sum);
+            }
+        }
+
+        String sender = newest.getSenderId();
+        String receiver = newest.getReceiverId();
+        List<String> participants = sender.compareTo(receiver) < 0 ? List.of(sender, receiver) : List.of(receiver, sender);
+        Update update = new Update()
+                .setOnInsert("participants", participants)
+                .set("lastMessageId", newest.getId())
+                .set("lastMessage", preview(newest.getMessage()))
+                .set("lastSenderId", sender)
+                .set("lastTimestamp", newest.getTimestamp());
+        unread.forEach((userId, count) -> update.inc("unread." + userId, count));
+        update.inc("version", 1);
+        Query olderOrMissing = Query.query(Criteria.where("_id").is(conversationId).orOperator(
+                Criteria.where("lastTimestamp").exists(false),
+                Criteria.where("lastTimestamp").lt(newest.getTimestamp()),
+                Criteria.where("lastTimestamp").is(newest.getTimestamp()).and("lastMessageId").lt(newest.getId())));
+        try {
+            mongoTemplate.upsert(olderOrMissing, update, Conversation_Summary.class);
+        } catch (DuplicateKeyException e) {
+            // the summary already holds a newer message: only count the new ones as unread
+            if (!unread.isEmpty()) {
+                Update incOnly = new Update().inc("version", 1);
+                unread.forEach((userId, count) -> incOnly.inc("unread." + userId, count));
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(conversationId)), incOnly,
+                        Conversation_Summary.class);
+            }
+        }
+    }
+
+    private static boolean isNewer(Concersation_Message candidate, Concersation_Message current) {
+        int byTime = candidate.getTimestamp().compareTo(current.getTimestamp());
+        return byTime > 0 || (byTime == 0 && candidate.getId().compareTo(current.getId()) > 0);
+    }
+
+    // everything in the conversation read, e.g. the REST endpoint without a seq
+    public void markRead(String conversationId, String userId) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(conversationId)),
+                new Update().set("unread." + userId, 0), Conversation_Summary.class);
+    }
+
+    /**
+     * Recounts the reader's unread messages from the acked seq instead of zeroing the counter, so a
+     * read receipt that does not cover the newest message leaves the later ones counted. The count
+     * is a range scan on conversation_receiver_seq over the messages past upToSeq only. The write is
+     * guarded on the summary's version: a message recorded between the count and the write bumps it,
+     * the write then matches nothing and the count is taken again, so its increment is never lost.
+     * If the conversation stays too busy, the counter keeps its (higher) value until the next receipt.
+     */
+    public void markRead(String conversationId, String userId, long upToSeq) {
+        Query byId = Query.query(Criteria.where("_id").is(conversationId));
+        byId.fields().include("version");
+        Query unreadMessages = Query.query(Criteria.where("conversationId").is(conversationId)
+                .and("receiverId").is(userId)
+                .and("receiverSeq").gt(upToSeq)
+                .and("readAt").is(null));
+
+        for (int attempt = 0; attempt < RECOUNT_ATTEMPTS; attempt++) {
+            Conversation_Summary current = mongoTemplate.findOne(byId, Conversation_Summary.class);
+            if (current == null) {
+                return;
+            }
+            long unread = mongoTemplate.count(unreadMessages, Concersation_Message.class);
+            UpdateResult result = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(conversationId).andOperator(atVersion(current.getVersion()))),
+                    new Update().set("unread." + userId, (int) unread), Conversation_Summary.class);
+            if (result.getMatchedCount() > 0) {
+                return;
+            }
+        }
+        log.debug("Unread recount for {} in {} kept losing to new messages; left for the next receipt",
+                userId, conversationId);
+    }
+
+    // summaries built by the backfill have no version field until their first new message
+    private static Criteria atVersion(long version) {
+        if (version == 0) {
+            return new Criteria().orOperator(Criteria.where("version").exists(false), Criteria.where("version").is(0L));
+        }
+        return Criteria.where("version").is(version);
+    }
+
+    public Conversation_Page getConversations(String userId, String before, Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        Criteria criteria = Criteria.where("participants").is(userId);
+        if (before != null) {
+            Message_Cursor cursor = Message_Cursor.decode(before);
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("lastTimestamp").lt(cursor.getTimestamp()),
+                    Criteria.where("lastTimestamp").is(cursor.getTimestamp()).and("_id").lt(cursor.getId())));
+        }
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "lastTimestamp", "_id"))
+                .limit(pageSize + 1);
+        List<Conversation_Summary> found = mongoTemplate.find(query, Conversation_Summary.class);
+
+        boolean hasMore = found.size() > pageSize;
+        List<Conversation_Summary> page = new ArrayList<>(found.subList(0, Math.min(pageSize, found.size())));
+        String nextCursor = null;
+        if (hasMore) {
+            Conversation_Summary last = page.get(page.size() - 1);
+            nextCursor = new Message_Cursor(last.getLastTimestamp(), last.getId()).encode();
+        }
+        log.debug("Fetched {} conversations for {} (hasMore={})", page.size(), userId, hasMore);
+        return new Conversation_Page(page, nextCursor, hasMore);
+    }
+
+    private String preview(String message) {
+        if (message == null || message.length() <= previewLength) {
+            return message;
+        }
+        return message.substring(0, previewLength);
+    }
+}
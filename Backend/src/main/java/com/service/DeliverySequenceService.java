@@ -0,0 +1,37 @@
+package com.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+// Per-user delivery counters: every message a user sends or receives takes the next number in their stream.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeliverySequenceService {
+
+    private static final String COLLECTION = "user_sequences";
+
+    private final MongoTemplate mongoTemplate;
+
+    public long next(String userId) {
+        Document counter = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(userId)),
+                new Update().inc("seq", 1L),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class,
+                COLLECTION);
+        return ((Number) counter.get("seq")).longValue();
+    }
+
+    public long current(String userId) {
+        Document counter = mongoTemplate.findById(userId, Document.class, COLLECTION);
+        return counter == null ? 0 : ((Number) counter.get("seq")).longValue();
+    }
+}
@@ -1,44 +1,115 @@
 package com.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 @Slf4j
 public class FirebaseNotificationService {
 
-    @Value("${firebase.functions.base-url:http://127.0.0.1:5001/chatapp-3a46e/us-central1}")
-    private String firebaseFunctionsBaseUrl;
+    private final String firebaseFunctionsBaseUrl;
 
     private final RestTemplate restTemplate;
 
-    public FirebaseNotificationService() {
-        this.restTemplate = new RestTemplate();
+    private final MeterRegistry meterRegistry;
+
+    public FirebaseNotificationService(
+            MeterRegistry meterRegistry,
+            @Value("${firebase.functions.base-url:http://127.0.0.1:5001/chatapp-3a46e/us-central1}") String firebaseFunctionsBaseUrl,
+            @Value("${chat.notifications.connect-timeout-ms:2000}") int connectTimeoutMs,
+            @Value("${chat.notifications.read-timeout-ms:3000}") int readTimeoutMs) {
+        this.firebaseFunctionsBaseUrl = firebaseFunctionsBaseUrl;
+        this.meterRegistry = meterRegistry;
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
     }
 
-    public void sendPushNotification(String receiverId, String senderId, String message, String senderName) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("receiverId", receiverId);
-            payload.put("senderId", senderId);
-            payload.put("message", message);
-            payload.put("senderName", senderName != null ? senderName : senderId);
+    /**
+     * How a call ended, as far as retrying it goes: 4xx responses (bad payload, unknown receiver)
+     * will never succeed and are REJECTED; 5xx responses, 408/429 and I/O failures are worth a RETRY.
+     */
+    public enum Delivery { SENT, RETRY, REJECTED }
+
+    // SENT may still leave some receivers of the batch to retry, as reported by the function
+    public record RoomDelivery(Delivery delivery, List<String> failedReceiverIds) {
+    }
+
+    private record Response(Delivery delivery, Map<?, ?> body) {
+    }
+
+    // Blocking call to the Functions endpoint; use NotificationDispatcher from request threads.
+    public Delivery sendPushNotification(String receiverId, String senderId, String message, String senderName) {
+        return sendPushNotification(receiverId, senderId, message, senderName, 1);
+    }
 
+    public Delivery sendPushNotification(String receiverId, String senderId, String message, String senderName,
+                                         int messageCount) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("receiverId", receiverId);
+        payload.put("senderId", senderId);
+        payload.put("message", message);
+        payload.put("senderName", senderName != null ? senderName : senderId);
+        payload.put("messageCount", messageCount);
+
+        return post("/sendNotificationHTTP", payload, receiverId).delivery();
+    }
+
+    // one call for many receivers of the same room message
+    public RoomDelivery sendRoomPushNotification(String roomId, List<String> receiverIds, String senderId,
+                                                 String message, String senderName, int messageCount) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("roomId", roomId);
+        payload.put("receiverIds", receiverIds);
+        payload.put("senderId", senderId);
+        payload.put("message", message);
+        payload.put("senderName", senderName != null ? senderName : senderId);
+        payload.put("messageCount", messageCount);
+
+        Response response = post("/sendBatchNotificationHTTP", payload,
+                receiverIds.size() + " members of room " + roomId);
+        return switch (response.delivery()) {
+            case SENT -> new RoomDelivery(Delivery.SENT, failedReceiverIds(response.body(), receiverIds));
+            case RETRY -> new RoomDelivery(Delivery.RETRY, receiverIds);
+            case REJECTED -> new RoomDelivery(Delivery.REJECTED, List.of());
+        };
+    }
+
+    // only ids that were part of this batch, so a malformed body cannot widen the retry
+    private static List<String> failedReceiverIds(Map<?, ?> body, List<String> receiverIds) {
+        if (body == null || !(body.get("failedReceiverIds") instanceof List<?> failed)) {
+            return List.of();
+        }
+        return receiverIds.stream().filter(failed::contains).toList();
+    }
+
+    // timed per function and outcome (success, rejected = 4xx, failed = 5xx, error = no usable response)
+    private Response post(String function, Map<String, Object> payload, String target) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
 
             HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(payload, headers);
 
-            String functionUrl = firebaseFunctionsBaseUrl + "/sendNotificationHTTP";
+            String functionUrl = firebaseFunctionsBaseUrl + function;
 
             log.debug("Calling Firebase Function: {} with payload: {}", functionUrl, payload);
 
@@ -49,14 +120,30 @@ public class FirebaseNotificationService {
             );
 
             if (response.getStatusCode().is2xxSuccessful()) {
-                log.info("Push notification sent successfully to user: {}", receiverId);
+                outcome = "success";
+                log.info("Push notification sent successfully to {}", target);
                 log.debug("Firebase Function response: {}", response.getBody());
+                return new Response(Delivery.SENT, response.getBody());
             } else {
+                outcome = "failed";
                 log.warn("Firebase Function returned non-success status: {}", response.getStatusCode());
+                return new Response(Delivery.RETRY, null);
             }
 
+        } catch (HttpStatusCodeException e) {
+            // timeouts and rate limiting are the client errors that can succeed later
+            int status = e.getStatusCode().value();
+            boolean rejected = e.getStatusCode().is4xxClientError() && status != 408 && status != 429;
+            outcome = rejected ? "rejected" : "failed";
+            log.warn("Firebase Function returned {} for {}: {}", e.getStatusCode(), target,
+                    e.getResponseBodyAsString());
+            return new Response(rejected ? Delivery.REJECTED : Delivery.RETRY, null);
         } catch (Exception e) {
-            log.error("Failed to send push notification via Firebase Function: {}", e.getMessage(), e);
+            log.warn("Failed to send push notification via Firebase Function: {}", e.getMessage());
+            return new Response(Delivery.RETRY, null);
+        } finally {
+            sample.stop(meterRegistry.timer("chat.notifications.call",
+                    "function", function.substring(1), "outcome", outcome));
         }
     }
 
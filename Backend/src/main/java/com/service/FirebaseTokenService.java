@@ -1,8 +1,12 @@
 package com.service;
 
+import com.google.firebase.ErrorCode;
+import com.google.firebase.auth.AuthErrorCode;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -10,12 +14,47 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class FirebaseTokenService {
 
+    private final VerifiedTokenCache tokenCache;
+    private final MeterRegistry meterRegistry;
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+    private final Timer rejectedTimer;
+
+    public FirebaseTokenService(VerifiedTokenCache tokenCache, MeterRegistry meterRegistry) {
+        this.tokenCache = tokenCache;
+        this.meterRegistry = meterRegistry;
+        this.cachedTimer = verifyTimer("cached");
+        this.verifiedTimer = verifyTimer("verified");
+        this.rejectedTimer = verifyTimer("rejected");
+    }
+
+    private Timer verifyTimer(String result) {
+        return Timer.builder("chat.auth.token.verify")
+                .description("ID token verification, including cache lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
     public FirebaseToken verifyToken(String idToken) throws FirebaseAuthException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        FirebaseToken cached = tokenCache.get(idToken);
+        if (cached != null) {
+            sample.stop(cachedTimer);
+            return cached;
+        }
+        long generation = tokenCache.generation();
         try {
             FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(idToken);
+            if (tokenCache.isRevoked(decodedToken)) {
+                throw new FirebaseAuthException(ErrorCode.UNAUTHENTICATED, "Firebase ID token has been revoked",
+                        null, null, AuthErrorCode.REVOKED_ID_TOKEN);
+            }
+            tokenCache.put(idToken, decodedToken, generation);
             log.debug("Verified token for UID: {}", decodedToken.getUid());
+            sample.stop(verifiedTimer);
             return decodedToken;
         } catch (FirebaseAuthException e) {
+            sample.stop(rejectedTimer);
             log.error("Token verification failed: {}", e.getMessage());
             throw e;
         }
@@ -39,4 +78,27 @@ public class FirebaseTokenService {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Signs the caller out: the presented token is verified, then dropped from this node's cache.
+     * With everywhere set, the user's refresh tokens are revoked at Firebase as well and every
+     * cached token of theirs is evicted, with tokens issued before now rejected on this node.
+     * Other nodes hold their own caches and keep accepting an already cached token until its exp,
+     * at most chat.auth.token-cache.max-ttl-seconds.
+     */
+    public String signOut(String idToken, boolean everywhere) throws FirebaseAuthException {
+        String uid = verifyToken(idToken).getUid();
+        if (everywhere) {
+            revokeRefreshTokens(uid);
+            tokenCache.revokeUser(uid);
+        } else {
+            tokenCache.revokeToken(idToken);
+        }
+        log.info("Signed out user {}{}", uid, everywhere ? " on every device" : "");
+        return uid;
+    }
+
+    protected void revokeRefreshTokens(String uid) throws FirebaseAuthException {
+        FirebaseAuth.getInstance().revokeRefreshTokens(uid);
+    }
+}
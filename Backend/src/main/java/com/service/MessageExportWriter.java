@@ -0,0 +1,78 @@
+package com.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.model.Concersation_Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a cursor-backed message stream straight to the response, one document at a time, as
+ * NDJSON or as a chunked JSON array. Memory stays bounded by the cursor batch and the flush
+ * interval; when the client goes away the write fails, the cursor is closed and nothing is rethrown.
+ * The cursor is opened by the body itself, so an async dispatch that never runs it (timeout, early
+ * abort) leaves nothing open.
+ */
+@Component
+@Slf4j
+public class MessageExportWriter {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ObjectMapper objectMapper;
+    private final int flushEvery;
+
+    public MessageExportWriter(ObjectMapper objectMapper,
+                               @Value("${chat.export.flush-every:200}") int flushEvery) {
+        this.objectMapper = objectMapper;
+        this.flushEvery = flushEvery;
+    }
+
+    public static boolean isStreaming(String format) {
+        return "ndjson".equalsIgnoreCase(format) || "stream".equalsIgnoreCase(format);
+    }
+
+    public static MediaType mediaTypeOf(String format) {
+        return "ndjson".equalsIgnoreCase(format) ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
+    }
+
+    // opens the stream when the body runs and closes it once written or when the client goes away
+    public StreamingResponseBody write(String format, Supplier<Stream<Concersation_Message>> source) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        return out -> {
+            long written = 0;
+            try (Stream<Concersation_Message> messages = source.get();
+                 JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                if (!ndjson) {
+                    gen.writeStartArray();
+                }
+                for (Iterator<Concersation_Message> it = messages.iterator(); it.hasNext(); ) {
+                    gen.writeObject(it.next());
+                    if (ndjson) {
+                        gen.writeRaw('\n');
+                    }
+                    if (++written % flushEvery == 0) {
+                        gen.flush();
+                    }
+                }
+                if (!ndjson) {
+                    gen.writeEndArray();
+                }
+                gen.flush();
+                log.debug("Streamed {} messages as {}", written, ndjson ? "ndjson" : "json array");
+            } catch (IOException e) {
+                // client disconnected mid-export; the try block already closed the Mongo cursor
+                log.debug("Message export aborted after {} messages: {}", written, e.getMessage());
+            }
+        };
+    }
+}
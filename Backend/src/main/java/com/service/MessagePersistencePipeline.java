@@ -0,0 +1,270 @@
+package com.service;
+
+import com.model.Concersation_Message;
+import com.repository.Concersation_Message_Repo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Writes chat messages to MongoDB in one of three modes (chat.persistence.mode):
+ * <ul>
+ *   <li>sync - one save per message on the calling thread (default)</li>
+ *   <li>group-commit - callers wait while writes from many senders are collected for a few
+ *       milliseconds and inserted with a single insertMany</li>
+ *   <li>ack-after-fanout - the message is returned straight away so it can be delivered, and is
+ *       inserted in the background; the buffer is bounded and flushed on shutdown</li>
+ * </ul>
+ * Listeners registered with onPersisted see each message once, after its write has landed, on the
+ * thread that wrote it (the caller in sync mode, the flusher otherwise).
+ */
+@Service
+@Slf4j
+public class MessagePersistencePipeline {
+
+    public enum Mode {
+        SYNC, GROUP_COMMIT, ACK_AFTER_FANOUT;
+
+        static Mode fromProperty(String value) {
+            return Mode.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    // how often an idle flusher checks whether it should stop
+    private static final long IDLE_POLL_MS = 100;
+
+    private final Concersation_Message_Repo msgRepo;
+    private final MongoTemplate mongoTemplate;
+    private final Mode mode;
+    private final long groupCommitWindowMs;
+    private final int maxBatchSize;
+    private final long writeTimeoutMs;
+    private final BlockingQueue<PendingWrite> buffer;
+    private final List<Consumer<List<Concersation_Message>>> listeners = new CopyOnWriteArrayList<>();
+
+    private final DistributionSummary batchSizes;
+    private final Counter failures;
+    private final Counter bufferFull;
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    public MessagePersistencePipeline(Concersation_Message_Repo msgRepo,
+                                      MongoTemplate mongoTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${chat.persistence.mode:sync}") String mode,
+                                      @Value("${chat.persistence.group-commit-window-ms:5}") long groupCommitWindowMs,
+                                      @Value("${chat.persistence.max-batch-size:500}") int maxBatchSize,
+                                      @Value("${chat.persistence.buffer-capacity:10000}") int bufferCapacity,
+                                      @Value("${chat.persistence.write-timeout-ms:5000}") long writeTimeoutMs) {
+        this.msgRepo = msgRepo;
+        this.mongoTemplate = mongoTemplate;
+        this.mode = Mode.fromProperty(mode);
+        this.groupCommitWindowMs = groupCommitWindowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.writeTimeoutMs = writeTimeoutMs;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+
+        Gauge.builder("chat.persistence.buffer.depth", buffer, BlockingQueue::size)
+                .description("Messages waiting to be written")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chat.persistence.batch.size")
+                .description("Messages per insertMany")
+                .register(meterRegistry);
+        this.failures = meterRegistry.counter("chat.persistence.failures");
+        this.bufferFull = meterRegistry.counter("chat.persistence.buffer.full");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (mode == Mode.SYNC) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "message-persistence-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Message persistence running in {} mode", mode);
+    }
+
+    // the flusher does the final drain itself, so nothing writes the buffer concurrently with it
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void onPersisted(Consumer<List<Concersation_Message>> listener) {
+        listeners.add(listener);
+    }
+
+    public Concersation_Message persist(Concersation_Message msg) {
+        if (mode == Mode.SYNC) {
+            return landed(msgRepo.save(msg));
+        }
+
+        if (msg.getId() == null) {
+            msg.setId(new ObjectId().toHexString());
+        }
+        PendingWrite write = new PendingWrite(msg, new CompletableFuture<>(), new AtomicBoolean());
+        if (!running || !buffer.offer(write)) {
+            // buffer is full (or shutting down): fall back to a direct write so the caller absorbs the backpressure
+            bufferFull.increment();
+            return landed(msgRepo.save(msg));
+        }
+
+        if (mode == Mode.ACK_AFTER_FANOUT) {
+            return msg;
+        }
+
+        try {
+            return write.done.get(writeTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for message write", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Group commit failed", e.getCause());
+        } catch (TimeoutException e) {
+            // the batch may still land; the id was assigned up front, so writing it directly is an
+            // idempotent upsert rather than a duplicate, and the send does not fail on a slow batch
+            log.warn("Group commit of message {} took over {} ms, writing it directly", msg.getId(), writeTimeoutMs);
+            Concersation_Message stored = msgRepo.save(msg);
+            if (write.notified.compareAndSet(false, true)) {
+                landed(stored);
+            }
+            return stored;
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingWrite first = buffer.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitWindowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        buffer.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    PendingWrite next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            write(batch);
+            batch.clear();
+        }
+
+        buffer.drainTo(batch);
+        if (!batch.isEmpty()) {
+            log.info("Flushing {} buffered messages on shutdown", batch.size());
+            write(batch);
+        }
+    }
+
+    private void write(List<PendingWrite> batch) {
+        List<Concersation_Message> docs = new ArrayList<>(batch.size());
+        batch.forEach(w -> docs.add(w.msg));
+
+        try {
+            mongoTemplate.insert(docs, Concersation_Message.class);
+            batchSizes.record(docs.size());
+            batch.forEach(w -> w.done.complete(w.msg));
+            log.debug("Inserted batch of {} messages", docs.size());
+            notifyLanded(batch);
+            return;
+        } catch (Exception e) {
+            log.warn("Batch insert of {} messages failed, retrying one by one: {}", docs.size(), e.getMessage());
+        }
+
+        // ids are assigned up front, so save() is idempotent for documents the failed batch already wrote
+        List<PendingWrite> stored = new ArrayList<>(batch.size());
+        for (PendingWrite w : batch) {
+            try {
+                w.done.complete(msgRepo.save(w.msg));
+                stored.add(w);
+            } catch (Exception e) {
+                failures.increment();
+                log.error("Unable to store message {}: {}", w.msg.getId(), e.getMessage());
+                w.done.completeExceptionally(e);
+            }
+        }
+        notifyLanded(stored);
+    }
+
+    // a message written directly after a group-commit timeout may land twice; listeners hear of it once
+    private void notifyLanded(List<PendingWrite> writes) {
+        List<Concersation_Message> landed = new ArrayList<>(writes.size());
+        for (PendingWrite w : writes) {
+            if (w.notified.compareAndSet(false, true)) {
+                landed.add(w.msg);
+            }
+        }
+        if (!landed.isEmpty()) {
+            notifyListeners(landed);
+        }
+    }
+
+    private Concersation_Message landed(Concersation_Message stored) {
+        notifyListeners(List.of(stored));
+        return stored;
+    }
+
+    private void notifyListeners(List<Concersation_Message> landed) {
+        for (Consumer<List<Concersation_Message>> listener : listeners) {
+            try {
+                listener.accept(landed);
+            } catch (Exception e) {
+                log.warn("Post-write listener failed for {} messages: {}", landed.size(), e.getMessage());
+            }
+        }
+    }
+
+    private record PendingWrite(Concersation_Message msg, CompletableFuture<Concersation_Message> done,
+                                AtomicBoolean notified) {
+    }
+}
@@ -1,13 +1,24 @@
 package com.service;
 
+import com.model.Chat_History_Page;
 import com.model.Concersation_Message;
+import com.model.Message_Cursor;
 import com.repository.Concersation_Message_Repo;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -15,35 +26,130 @@ import java.util.List;
 public class MessageService {
 
     private final Concersation_Message_Repo msgRepo;
+    private final MessagePersistencePipeline persistencePipeline;
+    private final ConversationSummaryService conversationSummaryService;
+    private final DeliverySequenceService deliverySequenceService;
+    private final RecentMessageCache recentMessageCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.history.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${chat.history.max-page-size:200}")
+    private int maxPageSize;
+
+    @Value("${chat.history.recent-window:50}")
+    private int recentWindow;
+
+    private Timer createdTimer;
+    private Timer createFailedTimer;
+    private Timer savedTimer;
+    private Timer saveFailedTimer;
+    private Timer historyTimer;
+    private Timer recentTimer;
+    private Timer sentTimer;
+    private Timer receivedTimer;
+    private Timer catchUpTimer;
+
+    // meters are built once so the hot paths only record into existing timers
+    @PostConstruct
+    void init() {
+        createdTimer = saveTimer("create", "success");
+        createFailedTimer = saveTimer("create", "failure");
+        savedTimer = saveTimer("save", "success");
+        saveFailedTimer = saveTimer("save", "failure");
+        historyTimer = queryTimer("history");
+        recentTimer = queryTimer("recent");
+        sentTimer = queryTimer("sent");
+        receivedTimer = queryTimer("received");
+        catchUpTimer = queryTimer("catch-up");
+        // the recent cache and summaries follow the writes that landed, off the send path in the batched modes
+        persistencePipeline.onPersisted(landed -> landed.forEach(recentMessageCache::append));
+        persistencePipeline.onPersisted(conversationSummaryService::recordMessages);
+    }
+
+    // path=create: sequence assignment and the persistence pipeline; path=save: a bare repository save
+    private Timer saveTimer(String path, String outcome) {
+        return Timer.builder("chat.messages.save")
+                .description("Persistence of one message")
+                .tag("path", path)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Timer queryTimer(String query) {
+        return Timer.builder("chat.messages.query")
+                .tag("query", query)
+                .register(meterRegistry);
+    }
 
     public Concersation_Message saveMessage(Concersation_Message msgEntity) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean stored = false;
         try {
             Concersation_Message storedMsg = msgRepo.save(msgEntity);
+            stored = true;
             log.debug("Saved new message with ID: {}", storedMsg.getId());
             return storedMsg;
         } catch (Exception ex) {
             log.error("Unable to store message: {}", ex.getMessage());
             throw new RuntimeException("Message storage failed", ex);
+        } finally {
+            sample.stop(stored ? savedTimer : saveFailedTimer);
         }
     }
 
-    public List<Concersation_Message> getChatHistory(String u1, String u2) {
+    public Chat_History_Page getChatHistoryPage(String u1, String u2, String before, String after, Integer limit) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of 'before' or 'after' may be given");
+        }
+        int pageSize = resolvePageSize(limit);
+        String conversationId = Concersation_Message.conversationIdOf(u1, u2);
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            List<Concersation_Message> convoData = msgRepo.findMessagesBetweenUsers(u1, u2);
-            log.debug("Fetched {} total messages for users {} <-> {}", convoData.size(), u1, u2);
-            return convoData;
+            List<Concersation_Message> convoData;
+            boolean hasMore;
+            if (after != null) {
+                convoData = msgRepo.findPageAfter(conversationId, Message_Cursor.decode(after), pageSize + 1);
+                hasMore = convoData.size() > pageSize;
+                convoData = new ArrayList<>(convoData.subList(0, Math.min(pageSize, convoData.size())));
+            } else {
+                Message_Cursor cursor = before != null ? Message_Cursor.decode(before) : null;
+                convoData = msgRepo.findPageBefore(conversationId, cursor, pageSize + 1);
+                hasMore = convoData.size() > pageSize;
+                convoData = new ArrayList<>(convoData.subList(0, Math.min(pageSize, convoData.size())));
+                Collections.reverse(convoData);
+            }
+
+            String beforeCursor = convoData.isEmpty() ? before : Message_Cursor.of(convoData.get(0)).encode();
+            String afterCursor = convoData.isEmpty() ? after : Message_Cursor.of(convoData.get(convoData.size() - 1)).encode();
+            log.debug("Fetched page of {} messages for users {} <-> {} (hasMore={})", convoData.size(), u1, u2, hasMore);
+            return new Chat_History_Page(convoData, beforeCursor, afterCursor, hasMore);
+        } catch (IllegalArgumentException ex) {
+            throw ex;
         } catch (Exception ex) {
             log.error("Chat history fetch failed: {}", ex.getMessage());
             throw new RuntimeException("Unable to fetch chat history", ex);
+        } finally {
+            sample.stop(historyTimer);
+        }
+    }
+
+    private int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
         }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        return Math.min(limit, maxPageSize);
     }
 
     public List<Concersation_Message> getRecentChatHistory(String u1, String u2) {
         try {
-            List<Concersation_Message> convoData = msgRepo.findRecentMessagesBetweenUsers(u1, u2);
-            if (convoData.size() > 50) {
-                convoData = convoData.subList(0, 50);
-            }
+            List<Concersation_Message> convoData = recentTimer.record(() -> recentMessageCache.get(
+                    Concersation_Message.conversationIdOf(u1, u2),
+                    conversationId -> msgRepo.findRecentMessagesInConversation(conversationId, Limit.of(recentWindow))));
             log.debug("Fetched {} recent messages for users {} <-> {}", convoData.size(), u1, u2);
             return convoData;
         } catch (Exception ex) {
@@ -54,7 +160,7 @@ public class MessageService {
 
     public List<Concersation_Message> getMessagesBySender(String senderKey) {
         try {
-            List<Concersation_Message> sentMsgs = msgRepo.findBySenderIdOrderByTimestampDesc(senderKey);
+            List<Concersation_Message> sentMsgs = sentTimer.record(() -> msgRepo.findBySenderIdOrderByTimestampDesc(senderKey));
             log.debug("Retrieved {} messages sent by {}", sentMsgs.size(), senderKey);
             return sentMsgs;
         } catch (Exception ex) {
@@ -65,7 +171,8 @@ public class MessageService {
 
     public List<Concersation_Message> getMessagesByReceiver(String receiverKey) {
         try {
-            List<Concersation_Message> recvMsgs = msgRepo.findByReceiverIdOrderByTimestampDesc(receiverKey);
+            List<Concersation_Message> recvMsgs = receivedTimer.record(
+                    () -> msgRepo.findByReceiverIdOrderByTimestampDesc(receiverKey));
             log.debug("Retrieved {} messages received by {}", recvMsgs.size(), receiverKey);
             return recvMsgs;
         } catch (Exception ex) {
@@ -74,13 +181,53 @@ public class MessageService {
         }
     }
 
+    public Stream<Concersation_Message> streamMessagesBySender(String senderKey, LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+        return msgRepo.streamBySender(senderKey, from, to);
+    }
+
+    public Stream<Concersation_Message> streamMessagesByReceiver(String receiverKey, LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+        return msgRepo.streamByReceiver(receiverKey, from, to);
+    }
+
+    public Stream<Concersation_Message> streamChatHistory(String u1, String u2, LocalDateTime from, LocalDateTime to) {
+        checkRange(from, to);
+        return msgRepo.streamConversation(Concersation_Message.conversationIdOf(u1, u2), from, to);
+    }
+
+    // messages in the user's delivery stream after afterSeq, in stream order
+    public List<Concersation_Message> getMessagesAfterSeq(String userId, long afterSeq, int limit) {
+        try {
+            return catchUpTimer.record(() -> msgRepo.findForUserAfterSeq(userId, afterSeq, limit));
+        } catch (Exception ex) {
+            log.error("Catch-up fetch failed for {}: {}", userId, ex.getMessage());
+            throw new RuntimeException("Unable to fetch missed messages", ex);
+        }
+    }
+
+    public void checkRange(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+    }
+
     public Concersation_Message createMessage(String sId, String rId, String body) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean stored = false;
         try {
             Concersation_Message newMsg = new Concersation_Message(sId, rId, body);
-            return saveMessage(newMsg);
+            newMsg.setReceiverSeq(deliverySequenceService.next(rId));
+            newMsg.setSenderSeq(sId.equals(rId) ? newMsg.getReceiverSeq() : deliverySequenceService.next(sId));
+            Concersation_Message storedMsg = persistencePipeline.persist(newMsg);
+            stored = true;
+            log.debug("Persisted new message with ID: {} ({})", storedMsg.getId(), persistencePipeline.getMode());
+            return storedMsg;
         } catch (Exception ex) {
             log.error("Message creation failed: {}", ex.getMessage());
             throw new RuntimeException("Unable to create message", ex);
+        } finally {
+            sample.stop(stored ? createdTimer : createFailedTimer);
         }
     }
 }
@@ -0,0 +1,364 @@
+package com.service;
+
+import com.service.FirebaseNotificationService.Delivery;
+import com.service.FirebaseNotificationService.RoomDelivery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes push notifications off the message hot path. Messages from the same sender to the same
+ * receiver that arrive within the coalescing window are merged into one notification (so the
+ * sender named on it sent every message it counts), a bounded number of notifications
+ * may be pending at once (newer ones are dropped beyond that), and deliveries that failed with a
+ * 5xx or I/O error are retried with exponential backoff plus jitter on a dedicated worker pool;
+ * 4xx rejections are not retried. Room messages are queued once per room and sender with the set
+ * of offline members, coalesced the same way, and sent as batch calls of up to batch-size receivers
+ * each. Once stopped, submits are refused and counted as dropped.
+ */
+@Service
+@Slf4j
+public class NotificationDispatcher {
+
+    private static final String ROOM_KEY_PREFIX = "\u0000room:";
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final FirebaseNotificationService notificationService;
+    private final int queueCapacity;
+    private final int workerCount;
+    private final long coalesceWindowMs;
+    private final int maxAttempts;
+    private final long retryBaseDelayMs;
+    private final int batchSize;
+    private final long shutdownFlushMs;
+
+    private final ConcurrentHashMap<String, PendingNotification> pendingByReceiver = new ConcurrentHashMap<>();
+    private final DelayQueue<PendingNotification> dueQueue = new DelayQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final Counter submitted;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter retried;
+    private final Counter batchedReceivers;
+
+    private volatile boolean running;
+
+    public NotificationDispatcher(FirebaseNotificationService notificationService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${chat.notifications.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${chat.notifications.workers:4}") int workerCount,
+                                  @Value("${chat.notifications.coalesce-window-ms:2000}") long coalesceWindowMs,
+                                  @Value("${chat.notifications.max-attempts:3}") int maxAttempts,
+                                  @Value("${chat.notifications.retry-base-delay-ms:500}") long retryBaseDelayMs,
+                                  @Value("${chat.notifications.batch-size:500}") int batchSize,
+                                  @Value("${chat.notifications.shutdown-flush-ms:5000}") long shutdownFlushMs) {
+        this.notificationService = notificationService;
+        this.queueCapacity = queueCapacity;
+        this.workerCount = workerCount;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelayMs = retryBaseDelayMs;
+        this.batchSize = batchSize;
+        this.shutdownFlushMs = shutdownFlushMs;
+
+        Gauge.builder("chat.notifications.queue.depth", this, NotificationDispatcher::getQueueDepth)
+                .description("Notifications waiting to be delivered")
+                .register(meterRegistry);
+        this.submitted = meterRegistry.counter("chat.notifications.submitted");
+        this.coalesced = meterRegistry.counter("chat.notifications.coalesced");
+        this.dropped = meterRegistry.counter("chat.notifications.dropped");
+        this.sent = meterRegistry.counter("chat.notifications.sent");
+        this.failed = meterRegistry.counter("chat.notifications.failed");
+        this.retried = meterRegistry.counter("chat.notifications.retried");
+        this.batchedReceivers = meterRegistry.counter("chat.notifications.batched.receivers");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::runWorker, "notification-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Notification dispatcher started with {} workers", workerCount);
+    }
+
+    /**
+     * Stops the workers and waits for them to finish their current delivery, then gives whatever is
+     * still queued or coalescing one delivery attempt, all within shutdown-flush-ms. Anything left
+     * after that is logged as lost.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        long deadline = System.currentTimeMillis() + shutdownFlushMs;
+        joinWorkers(deadline);
+
+        List<PendingNotification> remaining = new ArrayList<>(dueQueue);
+        dueQueue.clear();
+        if (remaining.isEmpty()) {
+            return;
+        }
+        int lost = 0;
+        for (PendingNotification notification : remaining) {
+            if (System.currentTimeMillis() >= deadline) {
+                lost++;
+                continue;
+            }
+            if (notification.attempts == 0) {
+                pendingByReceiver.remove(notification.key, notification);
+                inFlight.incrementAndGet();
+            }
+            deliver(notification);
+        }
+        if (lost > 0) {
+            failed.increment(lost);
+            log.warn("Notification dispatcher stopped with {} notifications undelivered", lost);
+        } else {
+            log.info("Notification dispatcher flushed {} pending notifications on shutdown", remaining.size());
+        }
+    }
+
+    // a worker still inside a delivery past the deadline is left to finish on its own; it is a daemon thread
+    private void joinWorkers(long deadline) {
+        for (Thread worker : workers) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                break;
+            }
+            try {
+                worker.join(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long alive = workers.stream().filter(Thread::isAlive).count();
+        if (alive > 0) {
+            log.warn("{} notification workers still running after shutdown-flush-ms", alive);
+        }
+        workers.clear();
+    }
+
+    /**
+     * Queues a notification without blocking. Returns false when it was dropped because the queue is
+     * full or the dispatcher has been stopped.
+     */
+    public boolean submit(String receiverId, String senderId, String message, String senderName) {
+        return enqueue(receiverId + KEY_SEPARATOR + senderId, null, List.of(receiverId), senderId, message,
+                senderName);
+    }
+
+    /**
+     * Queues one notification for a room message to the given (offline) members. Takes a single
+     * queue slot however many receivers there are.
+     */
+    public boolean submitRoom(String roomId, Collection<String> receiverIds, String senderId, String message,
+                              String senderName) {
+        if (receiverIds.isEmpty()) {
+            return true;
+        }
+        return enqueue(ROOM_KEY_PREFIX + roomId + KEY_SEPARATOR + senderId, roomId, receiverIds, senderId, message,
+                senderName);
+    }
+
+    private boolean enqueue(String key, String roomId, Collection<String> receiverIds, String senderId,
+                            String message, String senderName) {
+        submitted.increment();
+        if (!running) {
+            dropped.increment();
+            log.warn("Notification dispatcher is stopped, dropping notification from {} for {}", senderId,
+                    roomId != null ? "room " + roomId : receiverIds);
+            return false;
+        }
+        boolean[] accepted = {true};
+
+        pendingByReceiver.compute(key, (k, pending) -> {
+            if (pending != null) {
+                pending.merge(receiverIds, message, senderName);
+                coalesced.increment();
+                return pending;
+            }
+            if (pendingByReceiver.size() + inFlight.get() >= queueCapacity) {
+                accepted[0] = false;
+                return null;
+            }
+            PendingNotification created = new PendingNotification(key, roomId, receiverIds, senderId, message,
+                    senderName, System.currentTimeMillis() + coalesceWindowMs);
+            dueQueue.add(created);
+            return created;
+        });
+
+        if (!accepted[0]) {
+            dropped.increment();
+            log.warn("Notification queue full ({}), dropping notification for {}", queueCapacity,
+                    roomId != null ? "room " + roomId : receiverIds);
+        }
+        return accepted[0];
+    }
+
+    public int getQueueDepth() {
+        return pendingByReceiver.size() + inFlight.get();
+    }
+
+    private void runWorker() {
+        while (running) {
+            PendingNotification next;
+            try {
+                next = dueQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // after this no submit() can merge into the entry any more
+            if (next.attempts == 0) {
+                pendingByReceiver.remove(next.key, next);
+                inFlight.incrementAndGet();
+            }
+
+            deliver(next);
+        }
+    }
+
+    private void deliver(PendingNotification notification) {
+        notification.attempts++;
+        Delivery delivery = Delivery.RETRY;
+        try {
+            delivery = notification.roomId != null
+                    ? deliverRoom(notification)
+                    : notificationService.sendPushNotification(notification.receiverId(), notification.senderId,
+                    notification.preview(), notification.senderName, notification.messageCount);
+        } catch (Exception e) {
+            log.warn("Push notification to {} failed: {}", notification.target(), e.getMessage());
+        }
+
+        if (delivery == Delivery.SENT) {
+            sent.increment();
+            inFlight.decrementAndGet();
+            return;
+        }
+
+        if (delivery == Delivery.REJECTED || notification.attempts >= maxAttempts || !running) {
+            failed.increment();
+            inFlight.decrementAndGet();
+            log.warn("Giving up on push notification to {} after {} attempts ({})",
+                    notification.target(), notification.attempts, delivery);
+            return;
+        }
+
+        retried.increment();
+        notification.dueAt = System.currentTimeMillis() + backoff(notification.attempts);
+        dueQueue.add(notification);
+    }
+
+    // receivers the function delivered to, or rejected for good, are dropped, so a retry only resends the rest
+    private Delivery deliverRoom(PendingNotification notification) {
+        List<String> remaining = new ArrayList<>(notification.receiverIds);
+        boolean anySent = false;
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            List<String> batch = remaining.subList(from, Math.min(from + batchSize, remaining.size()));
+            RoomDelivery result = notificationService.sendRoomPushNotification(notification.roomId, batch,
+                    notification.senderId, notification.preview(), notification.senderName,
+                    notification.messageCount);
+            if (result.delivery() == Delivery.SENT) {
+                anySent = true;
+                batchedReceivers.increment(batch.size() - result.failedReceiverIds().size());
+            } else if (result.delivery() == Delivery.REJECTED) {
+                log.warn("Room {} notification rejected for {} receivers", notification.roomId, batch.size());
+            }
+            batch.stream()
+                    .filter(receiverId -> !result.failedReceiverIds().contains(receiverId))
+                    .forEach(notification.receiverIds::remove);
+        }
+        if (!notification.receiverIds.isEmpty()) {
+            return Delivery.RETRY;
+        }
+        return anySent ? Delivery.SENT : Delivery.REJECTED;
+    }
+
+    private long backoff(int attempt) {
+        long base = retryBaseDelayMs << Math.min(attempt - 1, 16);
+        return base / 2 + ThreadLocalRandom.current().nextLong(base + 1);
+    }
+
+    private static final class PendingNotification implements Delayed {
+
+        // receiver uid or ROOM_KEY_PREFIX + roomId, then the sender uid
+        private final String key;
+        private final String roomId;
+        private final Set<String> receiverIds;
+        private final String senderId;
+        private String senderName;
+        private String lastMessage;
+        private int messageCount;
+        private int attempts;
+        private volatile long dueAt;
+
+        private PendingNotification(String key, String roomId, Collection<String> receiverIds, String senderId,
+                                    String message, String senderName, long dueAt) {
+            this.key = key;
+            this.roomId = roomId;
+            this.receiverIds = new LinkedHashSet<>(receiverIds);
+            this.senderId = senderId;
+            this.senderName = senderName;
+            this.lastMessage = message;
+            this.messageCount = 1;
+            this.dueAt = dueAt;
+        }
+
+        // same sender by construction of the key; only the display name may have changed
+        private void merge(Collection<String> receiverIds, String message, String senderName) {
+            this.receiverIds.addAll(receiverIds);
+            this.senderName = senderName;
+            this.lastMessage = message;
+            this.messageCount++;
+        }
+
+        private String receiverId() {
+            return receiverIds.iterator().next();
+        }
+
+        private String target() {
+            return roomId != null ? "room " + roomId : receiverId();
+        }
+
+        private String preview() {
+            return messageCount == 1 ? lastMessage : lastMessage + " (+" + (messageCount - 1) + " more)";
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((PendingNotification) other).dueAt);
+        }
+    }
+}
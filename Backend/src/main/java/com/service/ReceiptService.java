@@ -0,0 +1,174 @@
+package com.service;
+
+import com.model.Ack_Frame;
+import com.model.Receipt_Event;
+import com.websocket.Message_Fanout;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery/read receipts. Acks are cumulative, so the aggregator keeps only the highest seq per
+ * (conversation, reader, type); a flush every few hundred ms turns whatever accumulated into one
+ * unordered bulk of updateMany operations and one Receipt_Event per entry to the other participant.
+ * Cost scales with active conversations per flush, not with acks received.
+ */
+@Service
+@Slf4j
+public class ReceiptService {
+
+    public static final String DELIVERED = "delivered";
+    public static final String READ = "read";
+
+    private final MongoTemplate mongoTemplate;
+    private final Message_Fanout messageFanout;
+    private final ConversationSummaryService conversationSummaryService;
+    private final RecentMessageCache recentMessageCache;
+    private final long flushIntervalMs;
+
+    private final ConcurrentHashMap<String, Ack_Frame> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    private final Counter acksReceived;
+    private final Counter receiptsWritten;
+    private final Timer flushTimer;
+
+    public ReceiptService(MongoTemplate mongoTemplate,
+                          @Lazy Message_Fanout messageFanout,
+                          ConversationSummaryService conversationSummaryService,
+                          RecentMessageCache recentMessageCache,
+                          MeterRegistry meterRegistry,
+                          @Value("${chat.receipts.flush-interval-ms:250}") long flushIntervalMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.messageFanout = messageFanout;
+        this.conversationSummaryService = conversationSummaryService;
+        this.recentMessageCache = recentMessageCache;
+        this.flushIntervalMs = flushIntervalMs;
+
+        this.acksReceived = meterRegistry.counter("chat.receipts.acks");
+        this.receiptsWritten = meterRegistry.counter("chat.receipts.flushed");
+        this.flushTimer = meterRegistry.timer("chat.receipts.flush");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "receipt-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    public void acknowledge(Ack_Frame ack) {
+        if (!DELIVERED.equals(ack.type()) && !READ.equals(ack.type())) {
+            throw new IllegalArgumentException("Unknown receipt type: " + ack.type());
+        }
+        acksReceived.increment();
+        String key = ack.conversationId() + '\u0000' + ack.readerId() + '\u0000' + ack.type();
+        pending.merge(key, ack, ReceiptService::newest);
+    }
+
+    private static Ack_Frame newest(Ack_Frame current, Ack_Frame incoming) {
+        return incoming.upToSeq() > current.upToSeq() ? incoming : current;
+    }
+
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // drain entry by entry; an ack arriving meanwhile just starts a new entry for the next flush
+        Map<String, Ack_Frame> batch = new HashMap<>();
+        for (String key : pending.keySet()) {
+            Ack_Frame ack = pending.remove(key);
+            if (ack != null) {
+                batch.put(key, ack);
+            }
+        }
+
+        flushTimer.record(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "messages");
+            for (Ack_Frame ack : batch.values()) {
+                Criteria upTo = Criteria.where("conversationId").is(ack.conversationId())
+                        .and("receiverId").is(ack.readerId())
+                        .and("receiverSeq").lte(ack.upToSeq());
+                // a read receipt implies delivery
+                bulk.updateMulti(Query.query(Criteria.where("deliveredAt").is(null).andOperator(upTo)),
+                        Update.update("deliveredAt", now));
+                if (READ.equals(ack.type())) {
+                    bulk.updateMulti(Query.query(Criteria.where("readAt").is(null).andOperator(upTo)),
+                            Update.update("readAt", now));
+                }
+            }
+            try {
+                bulk.execute();
+            } catch (Exception e) {
+                log.error("Receipt flush of {} acks failed, retrying next flush: {}", batch.size(), e.getMessage());
+                batch.forEach((key, ack) -> pending.merge(key, ack, ReceiptService::newest));
+                return;
+            }
+            receiptsWritten.increment(batch.size());
+            // cached rings hold the messages as they were before the receipt
+            batch.values().forEach(ack -> recentMessageCache.invalidate(ack.conversationId()));
+
+            long timestamp = System.currentTimeMillis();
+            for (Ack_Frame ack : batch.values()) {
+                if (READ.equals(ack.type())) {
+                    try {
+                        conversationSummaryService.markRead(ack.conversationId(), ack.readerId(), ack.upToSeq());
+                    } catch (Exception e) {
+                        log.warn("Unread reset failed for {}: {}", ack.conversationId(), e.getMessage());
+                    }
+                }
+                String other = otherParticipant(ack.conversationId(), ack.readerId());
+                if (other != null && !other.equals(ack.readerId())) {
+                    try {
+                        messageFanout.sendToUser(other, "/queue/receipts", new Receipt_Event(ack.conversationId(),
+                                ack.readerId(), ack.type(), ack.upToSeq(), ack.messageId(), timestamp));
+                    } catch (Exception e) {
+                        log.warn("Receipt event to {} failed: {}", other, e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    // conversation ids are "<lower uid>_<higher uid>"
+    static String otherParticipant(String conversationId, String readerId) {
+        if (conversationId.startsWith(readerId + "_")) {
+            return conversationId.substring(readerId.length() + 1);
+        }
+        if (conversationId.endsWith("_" + readerId)) {
+            return conversationId.substring(0, conversationId.length() - readerId.length() - 1);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.model.Concersation_Message;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The last recent-window messages of each hot conversation, held in a fixed-size ring per
+ * conversation. Rings are filled from Mongo on the first read and then kept current by appending
+ * each message once its write has landed (so a fill racing a background write cannot lose it);
+ * a conversation nobody has read yet is not cached. Receipt flushes drop the conversations they
+ * touched, so the next read reloads deliveredAt/readAt. Rings are weighed by an
+ * estimate of their resident bytes, and Caffeine evicts whole conversations once the total passes
+ * max-bytes.
+ */
+@Component
+@Slf4j
+public class RecentMessageCache {
+
+    private static final Comparator<Concersation_Message> NEWEST_FIRST =
+            Comparator.comparing(Concersation_Message::getTimestamp)
+                    .thenComparing(Concersation_Message::getId)
+                    .reversed();
+
+    private final boolean enabled;
+    private final int window;
+    private final Cache<String, Ring> rings;
+
+    public RecentMessageCache(MeterRegistry meterRegistry,
+                              @Value("${chat.history.recent-cache.enabled:true}") boolean enabled,
+                              @Value("${chat.history.recent-cache.max-bytes:67108864}") long maxBytes,
+                              @Value("${chat.history.recent-window:50}") int window) {
+        this.enabled = enabled;
+        this.window = window;
+        this.rings = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String conversationId, Ring ring) -> ring.weight())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, rings, "messages.recent");
+        Gauge.builder("chat.messages.recent.hit.ratio", rings, cache -> cache.stats().hitRate())
+                .register(meterRegistry);
+        Gauge.builder("chat.messages.recent.resident.bytes", this, RecentMessageCache::residentBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Newest first, like findRecentMessagesInConversation. On a miss the loader's result (newest
+     * first, at most recent-window long) becomes the conversation's ring.
+     */
+    public List<Concersation_Message> get(String conversationId,
+                                          Function<String, List<Concersation_Message>> loader) {
+        if (!enabled) {
+            return loader.apply(conversationId);
+        }
+        return rings.get(conversationId, id -> new Ring(window, loader.apply(id))).newestFirst();
+    }
+
+    // only touches warm conversations; the ring is re-weighed as part of the same compute
+    public void append(Concersation_Message msg) {
+        if (enabled) {
+            rings.asMap().computeIfPresent(msg.getConversationId(), (id, ring) -> ring.add(msg));
+        }
+    }
+
+    public void invalidate(String conversationId) {
+        if (enabled) {
+            rings.invalidate(conversationId);
+        }
+    }
+
+    public long residentBytes() {
+        rings.cleanUp();
+        return rings.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    long conversationCount() {
+        rings.cleanUp();
+        return rings.estimatedSize();
+    }
+
+    // rough retained size: object headers and fields, the boxed seqs and timestamp, and string bodies
+    static int estimateBytes(Concersation_Message msg) {
+        return 128 + stringBytes(msg.getId()) + stringBytes(msg.getConversationId())
+                + stringBytes(msg.getSenderId()) + stringBytes(msg.getReceiverId()) + stringBytes(msg.getMessage());
+    }
+
+    private static int stringBytes(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+
+    /**
+     * Circular buffer of the newest messages, oldest overwritten first. Guarded by its own monitor
+     * because readers snapshot it outside the cache's compute.
+     */
+    static final class Ring {
+
+        private final Concersation_Message[] slots;
+        private int head;
+        private int size;
+        private int bytes;
+
+        Ring(int capacity, List<Concersation_Message> newestFirst) {
+            this.slots = new Concersation_Message[capacity];
+            for (int i = Math.min(newestFirst.size(), capacity) - 1; i >= 0; i--) {
+                add(newestFirst.get(i));
+            }
+        }
+
+        synchronized Ring add(Concersation_Message msg) {
+            List<Concersation_Message> current = newestFirst();
+            for (Concersation_Message cached : current) {
+                if (cached.getId().equals(msg.getId())) {
+                    return this;
+                }
+            }
+            if (size == slots.length && NEWEST_FIRST.compare(msg, current.get(size - 1)) > 0) {
+                // older than everything kept
+                return this;
+            }
+            if (size > 0 && NEWEST_FIRST.compare(msg, current.get(0)) > 0) {
+                // raced with a newer write: rebuild in order rather than append out of place
+                current.add(msg);
+                current.sort(NEWEST_FIRST);
+                clear();
+                for (int i = Math.min(current.size(), slots.length) - 1; i >= 0; i--) {
+                    push(current.get(i));
+                }
+                return this;
+            }
+            push(msg);
+            return this;
+        }
+
+        synchronized List<Concersation_Message> newestFirst() {
+            List<Concersation_Message> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(slots[Math.floorMod(head - 1 - i, slots.length)]);
+            }
+            return out;
+        }
+
+        synchronized int weight() {
+            return 64 + 8 * slots.length + bytes;
+        }
+
+        private void push(Concersation_Message msg) {
+            Concersation_Message evicted = slots[head];
+            if (size == slots.length && evicted != null) {
+                bytes -= estimateBytes(evicted);
+            } else {
+                size++;
+            }
+            slots[head] = msg;
+            bytes += estimateBytes(msg);
+            head = (head + 1) % slots.length;
+        }
+
+        private void clear() {
+            Arrays.fill(slots, null);
+            head = 0;
+            size = 0;
+            bytes = 0;
+        }
+    }
+}
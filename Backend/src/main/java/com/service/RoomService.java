@@ -0,0 +1,208 @@
+package com.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.model.Chat_Room;
+import com.model.Room_Member;
+import com.model.Room_Message;
+import com.model.Room_Request;
+import com.repository.Chat_Room_Repo;
+import com.repository.Room_Message_Repo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Group rooms: the room document, its membership rows in room_members and its messages in
+ * room_messages. Member sets are cached per room because every room message needs one (for the
+ * sender check and for offline push); changes made through this node invalidate the entry, changes
+ * made on other nodes show up once the TTL runs out. Listeners registered with onMemberRemoved
+ * hear of each removal made through this node, after the cache entry is dropped.
+ */
+@Service
+@Slf4j
+public class RoomService {
+
+    private final MongoTemplate mongoTemplate;
+    private final Chat_Room_Repo roomRepo;
+    private final Room_Message_Repo roomMessageRepo;
+    private final int maxMembers;
+    private final int historyLimit;
+    private final Cache<String, Set<String>> members;
+    private final List<BiConsumer<String, String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    public RoomService(MongoTemplate mongoTemplate,
+                       Chat_Room_Repo roomRepo,
+                       Room_Message_Repo roomMessageRepo,
+                       MeterRegistry meterRegistry,
+                       @Value("${chat.rooms.max-members:5000}") int maxMembers,
+                       @Value("${chat.rooms.history-limit:50}") int historyLimit,
+                       @Value("${chat.rooms.member-cache.max-rooms:10000}") long maxCachedRooms,
+                       @Value("${chat.rooms.member-cache.ttl-seconds:300}") long memberCacheTtlSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.roomRepo = roomRepo;
+        this.roomMessageRepo = roomMessageRepo;
+        this.maxMembers = maxMembers;
+        this.historyLimit = historyLimit;
+        this.members = Caffeine.newBuilder()
+                .maximumSize(maxCachedRooms)
+                .expireAfterWrite(memberCacheTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, members, "rooms.members");
+    }
+
+    public Chat_Room createRoom(Room_Request request) {
+        if (request.name() == null || request.name().isBlank() || request.createdBy() == null) {
+            throw new IllegalArgumentException("Room name and creator are required");
+        }
+        Set<String> memberIds = new LinkedHashSet<>();
+        memberIds.add(request.createdBy());
+        if (request.memberIds() != null) {
+            memberIds.addAll(request.memberIds());
+        }
+        memberIds.remove(null);
+        checkSize(memberIds.size());
+
+        Chat_Room room = roomRepo.save(new Chat_Room(null, request.name().trim(), request.createdBy(),
+                LocalDateTime.now(), memberIds.size()));
+        upsertMembers(room.getId(), memberIds);
+        log.info("Created room {} with {} members", room.getId(), memberIds.size());
+        return room;
+    }
+
+    public Optional<Chat_Room> addMembers(String roomId, Collection<String> userIds) {
+        Optional<Chat_Room> room = roomRepo.findById(roomId);
+        if (room.isEmpty() || userIds == null || userIds.isEmpty()) {
+            return room;
+        }
+        Set<String> toAdd = new LinkedHashSet<>(userIds);
+        toAdd.remove(null);
+        toAdd.removeAll(members(roomId));
+        if (toAdd.isEmpty()) {
+            return room;
+        }
+        checkSize(room.get().getMemberCount() + toAdd.size());
+
+        int added = upsertMembers(roomId, toAdd);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(roomId)),
+                new Update().inc("memberCount", added), Chat_Room.class);
+        log.info("Added {} members to room {}", added, roomId);
+        return roomRepo.findById(roomId);
+    }
+
+    public boolean removeMember(String roomId, String userId) {
+        long removed = mongoTemplate.remove(Query.query(Criteria.where("roomId").is(roomId).and("userId").is(userId)),
+                Room_Member.class).getDeletedCount();
+        if (removed > 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(roomId)),
+                    new Update().inc("memberCount", -1), Chat_Room.class);
+        }
+        members.invalidate(roomId);
+        if (removed > 0) {
+            for (BiConsumer<String, String> listener : removalListeners) {
+                listener.accept(roomId, userId);
+            }
+        }
+        return removed > 0;
+    }
+
+    // called with (roomId, userId) once a membership row is gone
+    public void onMemberRemoved(BiConsumer<String, String> listener) {
+        removalListeners.add(listener);
+    }
+
+    public Optional<Chat_Room> getRoom(String roomId) {
+        return roomRepo.findById(roomId);
+    }
+
+    public List<Chat_Room> getRoomsForUser(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId));
+        query.fields().include("roomId");
+        List<String> roomIds = mongoTemplate.find(query, Room_Member.class).stream()
+                .map(Room_Member::getRoomId)
+                .toList();
+        List<Chat_Room> rooms = new ArrayList<>();
+        roomRepo.findAllById(roomIds).forEach(rooms::add);
+        return rooms;
+    }
+
+    public Set<String> members(String roomId) {
+        return members.get(roomId, this::loadMembers);
+    }
+
+    public boolean isMember(String roomId, String userId) {
+        return userId != null && members(roomId).contains(userId);
+    }
+
+    public Room_Message postMessage(String roomId, String senderId, String senderName, String message) {
+        if (!isMember(roomId, senderId)) {
+            throw new IllegalArgumentException(senderId + " is not a member of room " + roomId);
+        }
+        return roomMessageRepo.save(new Room_Message(roomId, senderId, senderName, message));
+    }
+
+    // oldest -> newest
+    public List<Room_Message> getRecentMessages(String roomId, String userId, Integer limit) {
+        if (!isMember(roomId, userId)) {
+            throw new IllegalArgumentException(userId + " is not a member of room " + roomId);
+        }
+        int size = limit == null ? historyLimit : Math.min(limit, historyLimit);
+        if (size < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<Room_Message> messages = new ArrayList<>(
+                roomMessageRepo.findByRoomIdOrderByTimestampDescIdDesc(roomId, PageRequest.of(0, size)));
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private void checkSize(int memberCount) {
+        if (memberCount > maxMembers) {
+            throw new IllegalArgumentException("Rooms are limited to " + maxMembers + " members");
+        }
+    }
+
+    // unordered upserts, so a member added concurrently by someone else is not an error
+    private int upsertMembers(String roomId, Set<String> userIds) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Room_Member.class);
+        LocalDateTime now = LocalDateTime.now();
+        for (String userId : userIds) {
+            bulk.upsert(Query.query(Criteria.where("roomId").is(roomId).and("userId").is(userId)),
+                    new Update().setOnInsert("joinedAt", now));
+        }
+        int added = bulk.execute().getUpserts().size();
+        members.invalidate(roomId);
+        return added;
+    }
+
+    private Set<String> loadMembers(String roomId) {
+        Query query = Query.query(Criteria.where("roomId").is(roomId));
+        query.fields().include("userId");
+        return mongoTemplate.find(query, Room_Member.class).stream()
+                .map(Room_Member::getUserId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,106 @@
+package com.service;
+
+import com.model.User;
+import com.model.User_Cursor;
+import com.model.User_Page;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paged, projected view of the users collection for the contacts screen. Every user write bumps
+ * one version counter document in Mongo and the ETag is that version, so every node hands out the
+ * same tag for the same directory and a write through any node invalidates what clients hold.
+ * Checking a tag costs one _id lookup instead of the page query.
+ */
+@Service
+@Slf4j
+public class UserDirectoryService {
+
+    private static final String COLLECTION = "counters";
+    private static final String VERSION_ID = "users-directory";
+
+    private final MongoTemplate mongoTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public UserDirectoryService(MongoTemplate mongoTemplate,
+                                @Value("${chat.users.directory.page-size:100}") int defaultPageSize,
+                                @Value("${chat.users.directory.max-page-size:500}") int maxPageSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public void onUserChanged() {
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(VERSION_ID)), new Update().inc("version", 1L),
+                    COLLECTION);
+        } catch (Exception e) {
+            // the write itself landed; clients keep a stale directory until the next change bumps the version
+            log.warn("Directory version bump failed: {}", e.getMessage());
+        }
+    }
+
+    public String etag() {
+        Document counter = mongoTemplate.findById(VERSION_ID, Document.class, COLLECTION);
+        long version = counter == null ? 0 : ((Number) counter.get("version")).longValue();
+        return "\"users-" + version + "\"";
+    }
+
+    public boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public User_Page getPage(String excludeUid, String after, Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+
+        List<Criteria> filters = new ArrayList<>();
+        if (after != null) {
+            User_Cursor cursor = User_Cursor.decode(after);
+            filters.add(new Criteria().orOperator(
+                    Criteria.where("normalizedName").gt(cursor.getNormalizedName()),
+                    Criteria.where("normalizedName").is(cursor.getNormalizedName()).and("_id").gt(cursor.getUid())));
+        }
+        if (excludeUid != null && !excludeUid.isEmpty()) {
+            filters.add(Criteria.where("_id").ne(excludeUid));
+        }
+        Criteria criteria = filters.isEmpty() ? new Criteria() : new Criteria().andOperator(filters);
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "normalizedName", "_id"))
+                .limit(pageSize + 1);
+        query.fields().include("name").include("photoURL").include("normalizedName");
+        List<User> found = mongoTemplate.find(query, User.class);
+
+        boolean hasMore = found.size() > pageSize;
+        List<User> page = new ArrayList<>(found.subList(0, Math.min(pageSize, found.size())));
+        String nextCursor = hasMore ? User_Cursor.of(page.get(page.size() - 1)).encode() : null;
+        log.debug("Directory page of {} users (after={}, hasMore={})", page.size(), after, hasMore);
+        return new User_Page(page, nextCursor, hasMore);
+    }
+}
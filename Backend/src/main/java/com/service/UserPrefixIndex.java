@@ -0,0 +1,97 @@
+package com.service;
+
+import com.model.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory type-ahead index over user name tokens. Keys are "token\0uid" in a sorted skip list,
+ * so every user with a token starting with a prefix sits in one contiguous sub-map: a prefix
+ * lookup is a range scan, the same walk a trie would do, without a node per character.
+ */
+class UserPrefixIndex {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final ConcurrentSkipListMap<String, String> tokens = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+
+    void put(User user) {
+        index(user, users.put(user.getUid(), user));
+    }
+
+    // used by the initial load so it never overwrites a newer copy written meanwhile
+    void putIfAbsent(User user) {
+        if (users.putIfAbsent(user.getUid(), user) == null) {
+            index(user, null);
+        }
+    }
+
+    private void index(User user, User previous) {
+        if (previous != null && previous.getNameTokens() != null) {
+            for (String token : previous.getNameTokens()) {
+                tokens.remove(token + SEPARATOR + user.getUid());
+            }
+        }
+        if (user.getNameTokens() != null) {
+            for (String token : user.getNameTokens()) {
+                tokens.put(token + SEPARATOR + user.getUid(), user.getUid());
+            }
+        }
+    }
+
+    int size() {
+        return users.size();
+    }
+
+    // users having a token that starts with each of the query tokens; the best maxCandidates by ranking
+    List<User> candidates(List<String> queryTokens, int maxCandidates, Comparator<User> ranking) {
+        String longest = queryTokens.get(0);
+        for (String token : queryTokens) {
+            if (token.length() > longest.length()) {
+                longest = token;
+            }
+        }
+
+        Set<String> uids = new LinkedHashSet<>();
+        for (Map.Entry<String, String> entry : tokens.subMap(longest, longest + Character.MAX_VALUE).entrySet()) {
+            uids.add(entry.getValue());
+        }
+
+        List<User> found = new ArrayList<>();
+        for (String uid : uids) {
+            User user = users.get(uid);
+            if (user != null && matchesAll(user, queryTokens)) {
+                found.add(user);
+            }
+        }
+        if (found.size() <= maxCandidates) {
+            return found;
+        }
+        found.sort(ranking);
+        return new ArrayList<>(found.subList(0, maxCandidates));
+    }
+
+    private static boolean matchesAll(User user, List<String> queryTokens) {
+        for (String query : queryTokens) {
+            boolean matched = false;
+            for (String token : user.getNameTokens()) {
+                if (token.startsWith(query)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
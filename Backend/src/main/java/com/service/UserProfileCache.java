@@ -0,0 +1,116 @@
+package com.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.model.User;
+import com.repository.User_Repo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache in front of User_Repo for profile lookups. Unknown uids are cached as
+ * empty for a shorter TTL so repeated lookups of a missing user don't reach MongoDB; saves
+ * replace the entry with the stored document.
+ */
+@Component
+@Slf4j
+public class UserProfileCache {
+
+    private final User_Repo userRepository;
+    private final long ttlSeconds;
+    private final long negativeTtlSeconds;
+    private final Cache<String, Optional<User>> profiles;
+
+    public UserProfileCache(User_Repo userRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${chat.users.cache.max-size:100000}") long maxSize,
+                            @Value("${chat.users.cache.ttl-seconds:600}") long ttlSeconds,
+                            @Value("${chat.users.cache.negative-ttl-seconds:30}") long negativeTtlSeconds) {
+        this.userRepository = userRepository;
+        this.ttlSeconds = ttlSeconds;
+        this.negativeTtlSeconds = negativeTtlSeconds;
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ProfileExpiry())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, profiles, "users.profiles");
+    }
+
+    public void put(User user) {
+        profiles.put(user.getUid(), Optional.of(user));
+    }
+
+    public Optional<User> get(String uid) {
+        return profiles.get(uid, userRepository::findById);
+    }
+
+    // cached profile only, never loads; null when absent or cached as missing
+    public User getIfPresent(String uid) {
+        Optional<User> cached = profiles.getIfPresent(uid);
+        return cached != null ? cached.orElse(null) : null;
+    }
+
+    // in the order asked for, unknown uids left out; all misses are loaded with one $in query
+    public List<User> getAll(Collection<String> uids) {
+        Set<String> wanted = new LinkedHashSet<>(uids);
+        Map<String, Optional<User>> found = profiles.getAll(wanted, this::loadAll);
+
+        List<User> users = new ArrayList<>(wanted.size());
+        for (String uid : wanted) {
+            found.getOrDefault(uid, Optional.empty()).ifPresent(users::add);
+        }
+        return users;
+    }
+
+    public void invalidate(String uid) {
+        if (uid != null) {
+            profiles.invalidate(uid);
+        }
+    }
+
+    private Map<String, Optional<User>> loadAll(Set<? extends String> misses) {
+        Map<String, Optional<User>> loaded = new LinkedHashMap<>();
+        for (String uid : misses) {
+            loaded.put(uid, Optional.empty());
+        }
+        for (User user : userRepository.findAllById(new ArrayList<>(misses))) {
+            loaded.put(user.getUid(), Optional.of(user));
+        }
+        log.debug("Loaded {} of {} uncached profiles", loaded.values().stream().filter(Optional::isPresent).count(), misses.size());
+        return loaded;
+    }
+
+    private final class ProfileExpiry implements Expiry<String, Optional<User>> {
+
+        @Override
+        public long expireAfterCreate(String key, Optional<User> value, long currentTime) {
+            return TimeUnit.SECONDS.toNanos(value.isPresent() ? ttlSeconds : negativeTtlSeconds);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<User> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<User> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.service;
+
+import com.model.User;
+import com.model.User_Page;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class UserSearchService {
+
+    private static final Pattern REGEX_META = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
+    private final MongoTemplate mongoTemplate;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxCandidates;
+    private final UserPrefixIndex prefixIndex;
+    private volatile boolean prefixIndexReady;
+
+    public UserSearchService(MongoTemplate mongoTemplate,
+                             @Value("${chat.users.search.page-size:20}") int defaultPageSize,
+                             @Value("${chat.users.search.max-page-size:50}") int maxPageSize,
+                             @Value("${chat.users.search.max-candidates:500}") int maxCandidates,
+                             @Value("${chat.users.search.prefix-cache.enabled:false}") boolean prefixCacheEnabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxCandidates = maxCandidates;
+        this.prefixIndex = prefixCacheEnabled ? new UserPrefixIndex() : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPrefixIndex() {
+        if (prefixIndex == null) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            Query all = new Query(Criteria.where("nameTokens").exists(true));
+            try (Stream<User> users = mongoTemplate.stream(all, User.class)) {
+                users.forEach(prefixIndex::putIfAbsent);
+                prefixIndexReady = true;
+                log.info("User prefix index loaded with {} users", prefixIndex.size());
+            } catch (Exception e) {
+                log.error("User prefix index load failed, searches stay on MongoDB: {}", e.getMessage());
+            }
+        }, "user-prefix-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public void onUserSaved(User user) {
+        if (prefixIndex != null && user.getUid() != null) {
+            prefixIndex.put(user);
+        }
+    }
+
+    // nextCursor is the next page number
+    public User_Page search(String query, String excludeUid, int page, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.min(size, maxPageSize);
+        if (pageSize < 1 || page < 0) {
+            throw new IllegalArgumentException("Invalid page request");
+        }
+        String normalized = query == null ? "" : User.normalize(query);
+        if (normalized.isEmpty()) {
+            return new User_Page(List.of(), null, false);
+        }
+        List<String> queryTokens = User.tokenize(normalized);
+
+        Comparator<User> ranking = ranking(normalized, queryTokens.get(0));
+        List<User> candidates = prefixIndexReady
+                ? prefixIndex.candidates(queryTokens, maxCandidates + 1, ranking)
+                : findCandidates(normalized, queryTokens, excludeUid);
+
+        List<User> ranked = new ArrayList<>(candidates.size());
+        for (User user : candidates) {
+            if (excludeUid == null || !excludeUid.equals(user.getUid())) {
+                ranked.add(user);
+            }
+        }
+        ranked.sort(ranking);
+
+        int from = Math.min(page * pageSize, ranked.size());
+        int to = Math.min(from + pageSize, ranked.size());
+        boolean hasMore = to < ranked.size();
+        log.debug("User search '{}' matched {} candidates", normalized, ranked.size());
+        return new User_Page(new ArrayList<>(ranked.subList(from, to)), hasMore ? String.valueOf(page + 1) : null, hasMore);
+    }
+
+    /**
+     * One capped query per rank tier (exact name, name prefix, first-token prefix, any token match),
+     * best tier first, each skipping what an earlier tier found. The cap then cuts off the weakest
+     * matches rather than whatever sorts last alphabetically. Every tier still requires all query
+     * tokens to prefix-match a name token, and uses either the normalizedName or the nameTokens index.
+     */
+    private List<User> findCandidates(String normalized, List<String> queryTokens, String excludeUid) {
+        List<Pattern> prefixes = new ArrayList<>(queryTokens.size());
+        for (String token : queryTokens) {
+            prefixes.add(prefixPattern(token));
+        }
+        List<Criteria> tiers = new ArrayList<>();
+        tiers.add(Criteria.where("normalizedName").is(normalized));
+        tiers.add(Criteria.where("normalizedName").regex(prefixPattern(normalized)));
+        if (queryTokens.size() > 1) {
+            tiers.add(Criteria.where("normalizedName").regex(prefixPattern(queryTokens.get(0))));
+        }
+        tiers.add(new Criteria());
+
+        Map<String, User> found = new LinkedHashMap<>();
+        for (Criteria tier : tiers) {
+            int remaining = maxCandidates + 1 - found.size();
+            if (remaining <= 0) {
+                break;
+            }
+            Criteria criteria = new Criteria().andOperator(tier, Criteria.where("nameTokens").all(prefixes.toArray()));
+            List<String> skip = new ArrayList<>(found.keySet());
+            if (excludeUid != null && !excludeUid.isEmpty()) {
+                skip.add(excludeUid);
+            }
+            if (!skip.isEmpty()) {
+                criteria = criteria.and("_id").nin(skip);
+            }
+            Query query = Query.query(criteria)
+                    .with(Sort.by(Sort.Direction.ASC, "normalizedName", "_id"))
+                    .limit(remaining);
+            for (User user : mongoTemplate.find(query, User.class)) {
+                found.putIfAbsent(user.getUid(), user);
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    // anchored, case-sensitive prefix on lowercased values, so it is an index range scan
+    private static Pattern prefixPattern(String value) {
+        return Pattern.compile("^" + REGEX_META.matcher(value).replaceAll("\\\\$0"));
+    }
+
+    static Comparator<User> ranking(String normalizedQuery, String firstToken) {
+        return Comparator.<User>comparingInt(user -> rank(user, normalizedQuery, firstToken))
+                .thenComparing(User::getNormalizedName)
+                .thenComparing(User::getUid);
+    }
+
+    private static int rank(User user, String normalizedQuery, String firstToken) {
+        String name = user.getNormalizedName();
+        if (name.equals(normalizedQuery)) {
+            return 0;
+        }
+        if (name.startsWith(normalizedQuery)) {
+            return 1;
+        }
+        return name.startsWith(firstToken) ? 2 : 3;
+    }
+}
@@ -0,0 +1,109 @@
+package com.service;
+
+import com.model.User;
+import com.model.User_Save_Result;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+
+/**
+ * Login-time profile save. One findAndModify upserts the document, filtered so it only matches
+ * when the name, photo or provider actually differs. If the document exists and nothing differs,
+ * the filtered upsert collides on _id, which is reported as unchanged. The database decides
+ * rather than the node-local profile cache, so changes made through other nodes are not masked.
+ */
+@Service
+@Slf4j
+public class UserService {
+
+    private final MongoTemplate mongoTemplate;
+    private final UserProfileCache userProfileCache;
+    private final UserSearchService userSearchService;
+    private final UserDirectoryService userDirectoryService;
+    private final MeterRegistry meterRegistry;
+
+    public UserService(MongoTemplate mongoTemplate,
+                       UserProfileCache userProfileCache,
+                       UserSearchService userSearchService,
+                       UserDirectoryService userDirectoryService,
+                       MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.userProfileCache = userProfileCache;
+        this.userSearchService = userSearchService;
+        this.userDirectoryService = userDirectoryService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public User_Save_Result saveUser(User user) {
+        if (user.getUid() == null || user.getUid().isEmpty()) {
+            throw new IllegalArgumentException("uid is required");
+        }
+
+        Query changed = Query.query(new Criteria().andOperator(
+                Criteria.where("_id").is(user.getUid()),
+                new Criteria().orOperator(
+                        Criteria.where("name").ne(user.getName()),
+                        Criteria.where("photoURL").ne(user.getPhotoURL()),
+                        Criteria.where("provider").ne(user.getProvider()))));
+
+        User normalized = new User();
+        normalized.setName(user.getName());
+        Update update = new Update()
+                .set("name", user.getName())
+                .set("normalizedName", normalized.getNormalizedName())
+                .set("nameTokens", normalized.getNameTokens())
+                .set("photoURL", user.getPhotoURL())
+                .set("provider", user.getProvider())
+                .setOnInsert("email", user.getEmail());
+
+        User previous;
+        try {
+            previous = mongoTemplate.findAndModify(changed, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(false), User.class);
+        } catch (DuplicateKeyException e) {
+            // the filter proved the stored profile equals the caller's, so no read is needed; a cached
+            // copy that differs was changed through another node and is dropped for the next reader
+            User cached = userProfileCache.getIfPresent(user.getUid());
+            if (cached != null && sameProfile(cached, user)) {
+                return record(new User_Save_Result(cached, User_Save_Result.Outcome.UNCHANGED));
+            }
+            userProfileCache.invalidate(user.getUid());
+            return record(new User_Save_Result(user, User_Save_Result.Outcome.UNCHANGED));
+        }
+
+        User stored = previous != null ? previous : new User();
+        stored.setUid(user.getUid());
+        if (previous == null) {
+            stored.setEmail(user.getEmail());
+        }
+        stored.setName(user.getName());
+        stored.setPhotoURL(user.getPhotoURL());
+        stored.setProvider(user.getProvider());
+
+        userProfileCache.put(stored);
+        userSearchService.onUserSaved(stored);
+        userDirectoryService.onUserChanged();
+        return record(new User_Save_Result(stored,
+                previous == null ? User_Save_Result.Outcome.CREATED : User_Save_Result.Outcome.UPDATED));
+    }
+
+    private User_Save_Result record(User_Save_Result result) {
+        meterRegistry.counter("chat.users.save", "result", result.getOutcome().name().toLowerCase()).increment();
+        log.debug("User {} save: {}", result.getUser().getUid(), result.getOutcome());
+        return result;
+    }
+
+    private static boolean sameProfile(User stored, User incoming) {
+        return Objects.equals(stored.getName(), incoming.getName())
+                && Objects.equals(stored.getPhotoURL(), incoming.getPhotoURL())
+                && Objects.equals(stored.getProvider(), incoming.getProvider());
+    }
+}
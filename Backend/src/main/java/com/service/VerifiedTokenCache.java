@@ -0,0 +1,148 @@
+package com.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers ID tokens that already passed signature verification, keyed by a SHA-256 of the token
+ * so raw tokens are never held. Each entry lives until the token's own exp (capped by max-ttl),
+ * and revoking a user evicts their entries and refuses tokens issued before the revocation. Every
+ * revocation bumps a generation; a put from a verification that started before the latest
+ * revocation is discarded, so an in-flight verification cannot re-cache a revoked token.
+ */
+@Component
+@Slf4j
+public class VerifiedTokenCache {
+
+    private final boolean enabled;
+    private final long maxTtlSeconds;
+    private final Cache<String, FirebaseToken> tokens;
+    private final Cache<String, Long> revokedAtSeconds;
+    private final AtomicLong generation = new AtomicLong();
+
+    public VerifiedTokenCache(MeterRegistry meterRegistry,
+                              @Value("${chat.auth.token-cache.enabled:true}") boolean enabled,
+                              @Value("${chat.auth.token-cache.max-size:100000}") long maxSize,
+                              @Value("${chat.auth.token-cache.max-ttl-seconds:3600}") long maxTtlSeconds) {
+        this.enabled = enabled;
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        // ID tokens live at most an hour, so revocations only need remembering that long
+        this.revokedAtSeconds = Caffeine.newBuilder()
+                .expireAfterWrite(maxTtlSeconds, TimeUnit.SECONDS)
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, tokens, "firebase.tokens");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public FirebaseToken get(String idToken) {
+        if (!enabled) {
+            return null;
+        }
+        return tokens.getIfPresent(keyOf(idToken));
+    }
+
+    // read before verifying, and hand back to put()
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches a token verified since the given generation. Revocations bump the generation before
+     * evicting, so re-checking it after the put either sees the revocation or runs before its
+     * eviction; either way a revoked token does not stay cached.
+     */
+    public void put(String idToken, FirebaseToken decoded, long verifiedSince) {
+        if (!enabled || secondsUntilExpiry(decoded) <= 0 || generation.get() != verifiedSince) {
+            return;
+        }
+        String key = keyOf(idToken);
+        tokens.put(key, decoded);
+        if (generation.get() != verifiedSince) {
+            tokens.invalidate(key);
+        }
+    }
+
+    public boolean isRevoked(FirebaseToken decoded) {
+        Long revokedAt = revokedAtSeconds.getIfPresent(decoded.getUid());
+        Long issuedAt = claimSeconds(decoded, "iat");
+        return revokedAt != null && (issuedAt == null || issuedAt <= revokedAt);
+    }
+
+    public void revokeToken(String idToken) {
+        generation.incrementAndGet();
+        tokens.invalidate(keyOf(idToken));
+    }
+
+    public void revokeUser(String uid) {
+        revokedAtSeconds.put(uid, System.currentTimeMillis() / 1000);
+        generation.incrementAndGet();
+        tokens.asMap().values().removeIf(token -> uid.equals(token.getUid()));
+        log.info("Revoked cached tokens for user {}", uid);
+    }
+
+    public void clear() {
+        tokens.invalidateAll();
+    }
+
+    private long secondsUntilExpiry(FirebaseToken decoded) {
+        Long exp = claimSeconds(decoded, "exp");
+        long now = System.currentTimeMillis() / 1000;
+        long untilExp = exp != null ? exp - now : maxTtlSeconds;
+        return Math.min(untilExp, maxTtlSeconds);
+    }
+
+    private static Long claimSeconds(FirebaseToken decoded, String claim) {
+        Object value = decoded.getClaims().get(claim);
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static String keyOf(String idToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(idToken.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final class TokenExpiry implements Expiry<String, FirebaseToken> {
+
+        @Override
+        public long expireAfterCreate(String key, FirebaseToken value, long currentTime) {
+            return TimeUnit.SECONDS.toNanos(Math.max(secondsUntilExpiry(value), 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, FirebaseToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, FirebaseToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.websocket;
+
+public record Cluster_Envelope(String originNodeId, String destination, String contentType, byte[] payload) {
+}
@@ -0,0 +1,85 @@
+package com.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+
+import java.util.function.Consumer;
+
+/**
+ * Sits on the broker channel. Messages published on this node to /topic/** or /user/** are copied
+ * to the other nodes, which hand them to their own broker channel so local subscribers (and the
+ * local user destination resolver) see them. Copies carry an origin header and are never re-published.
+ */
+@Slf4j
+public class Cluster_Fanout_Interceptor implements ChannelInterceptor {
+
+    public static final String ORIGIN_HEADER = "clusterOrigin";
+
+    private final Cluster_Transport transport;
+    private final MessageChannel brokerChannel;
+    private final String nodeId;
+    private final Consumer<Cluster_Envelope> listener = this::deliverLocally;
+
+    public Cluster_Fanout_Interceptor(Cluster_Transport transport, MessageChannel brokerChannel, String nodeId) {
+        this.transport = transport;
+        this.brokerChannel = brokerChannel;
+        this.nodeId = nodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        transport.subscribe(listener);
+        log.info("Cluster fan-out active on node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        transport.unsubscribe(listener);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (headers.containsKey(ORIGIN_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null || !(destination.startsWith("/topic/") || destination.startsWith("/user/"))) {
+            return message;
+        }
+
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        try {
+            transport.publish(new Cluster_Envelope(nodeId, destination,
+                    contentType != null ? contentType.toString() : null, payload));
+        } catch (Exception e) {
+            log.warn("Cluster publish to {} failed: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    private void deliverLocally(Cluster_Envelope envelope) {
+        if (nodeId.equals(envelope.originNodeId())) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.destination());
+        if (envelope.contentType() != null) {
+            accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+        }
+        accessor.setHeader(ORIGIN_HEADER, envelope.originNodeId());
+        brokerChannel.send(MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+    }
+}
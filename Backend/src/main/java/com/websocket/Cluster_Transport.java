@@ -0,0 +1,13 @@
+package com.websocket;
+
+import java.util.function.Consumer;
+
+// Carries broker messages between backend nodes when chat.broker.mode=cluster.
+public interface Cluster_Transport {
+
+    void publish(Cluster_Envelope envelope);
+
+    void subscribe(Consumer<Cluster_Envelope> listener);
+
+    void unsubscribe(Consumer<Cluster_Envelope> listener);
+}
@@ -0,0 +1,123 @@
+package com.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for clientInboundChannel that pins every STOMP session to one of a fixed number of
+ * single-threaded lanes. Frames from a session run in arrival order while different sessions
+ * use all lanes in parallel. Lanes are bounded: a full lane blocks the submitting WebSocket
+ * reader for up to the offer timeout (slowing that connection), then fails the frame with a
+ * MessageDeliveryException, which the STOMP handler reports back to the client as an ERROR.
+ * (A RejectedExecutionException would make the channel run the frame inline, out of order.)
+ * <p>
+ * Handlers block on Mongo (seq assignment and the message write), and a blocked handler holds its
+ * whole lane, so there are many more lanes than cores; with virtual threads a lane costs little and
+ * the default goes higher still. Under chat.persistence.mode=group-commit a /app/chat handler waits
+ * for its batch to land, so one lane adds at most one message per commit window: group-commit
+ * throughput is bounded by lanes / window, which is another reason to keep the lane count high.
+ */
+@Slf4j
+public class Inbound_Lane_Executor implements TaskExecutor {
+
+    private final Lane[] lanes;
+    private final long offerTimeoutMs;
+    private final Counter rejected;
+    private final AtomicInteger unkeyed = new AtomicInteger();
+
+    public Inbound_Lane_Executor(int laneCount, int capacity, long offerTimeoutMs,
+                                 ThreadFactory threadFactory, MeterRegistry meterRegistry) {
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, capacity, threadFactory);
+            Gauge.builder("chat.inbound.lane.depth", lanes[i].queue, BlockingQueue::size)
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.rejected = meterRegistry.counter("chat.inbound.rejected");
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Lane lane = lanes[laneIndex(task)];
+        try {
+            if (!lane.queue.offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw failure(task, "Inbound lane " + lane.index + " is full", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure(task, "Interrupted while queueing inbound frame", e);
+        }
+    }
+
+    private static RuntimeException failure(Runnable task, String reason, Throwable cause) {
+        if (task instanceof MessageHandlingRunnable handling) {
+            return new MessageDeliveryException(handling.getMessage(), reason, cause);
+        }
+        return new IllegalStateException(reason, cause);
+    }
+
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    int laneIndex(Runnable task) {
+        String sessionId = null;
+        if (task instanceof MessageHandlingRunnable handling) {
+            Message<?> message = handling.getMessage();
+            sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        }
+        int hash = sessionId != null ? sessionId.hashCode() : unkeyed.getAndIncrement();
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    private static final class Lane implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+
+        private Lane(int index, int capacity, ThreadFactory threadFactory) {
+            this.index = index;
+            // linked so an idle lane holds no preallocated slots
+            this.queue = new LinkedBlockingQueue<>(capacity);
+            this.thread = threadFactory.newThread(this);
+            this.thread.setName("stomp-inbound-lane-" + index);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Inbound frame failed on lane {}: {}", index, t.getMessage(), t);
+                }
+            }
+        }
+    }
+}
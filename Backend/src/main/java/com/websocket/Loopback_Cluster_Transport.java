@@ -0,0 +1,44 @@
+package com.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-JVM transport: every node created in this process with the same cluster name sees the others.
+// Used for tests and single-process setups; a networked transport can replace it as a bean.
+@Slf4j
+public class Loopback_Cluster_Transport implements Cluster_Transport {
+
+    private static final Map<String, List<Consumer<Cluster_Envelope>>> BUSES = new ConcurrentHashMap<>();
+
+    private final List<Consumer<Cluster_Envelope>> bus;
+
+    public Loopback_Cluster_Transport(String clusterName) {
+        this.bus = BUSES.computeIfAbsent(clusterName, name -> new CopyOnWriteArrayList<>());
+    }
+
+    @Override
+    public void publish(Cluster_Envelope envelope) {
+        for (Consumer<Cluster_Envelope> listener : bus) {
+            try {
+                listener.accept(envelope);
+            } catch (Exception e) {
+                log.warn("Cluster listener failed for {}: {}", envelope.destination(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Cluster_Envelope> listener) {
+        bus.add(listener);
+    }
+
+    @Override
+    public void unsubscribe(Consumer<Cluster_Envelope> listener) {
+        bus.remove(listener);
+    }
+}
@@ -0,0 +1,105 @@
+package com.websocket;
+
+import com.model.Concersation_Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivers a stored chat message to every configured destination. The payload is serialized once
+ * and the same byte[] is handed to the broker for each destination. Other typed events go out
+ * through {@link #send} / {@link #sendToUser} so they share the configured wire encoding.
+ */
+@Component
+@Slf4j
+public class Message_Fanout {
+
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final Wire_Codec wireCodec;
+    private final boolean userQueues;
+    private final boolean conversationTopic;
+    private final boolean legacyUserTopics;
+    private final Timer deliverTimer;
+
+    public Message_Fanout(SimpMessageSendingOperations messagingTemplate,
+                          Wire_Codec wireCodec,
+                          MeterRegistry meterRegistry,
+                          @Value("${chat.fanout.user-queues:true}") boolean userQueues,
+                          @Value("${chat.fanout.conversation-topic:true}") boolean conversationTopic,
+                          @Value("${chat.fanout.legacy-user-topics:true}") boolean legacyUserTopics) {
+        this.messagingTemplate = messagingTemplate;
+        this.wireCodec = wireCodec;
+        this.userQueues = userQueues;
+        this.conversationTopic = conversationTopic;
+        this.legacyUserTopics = legacyUserTopics;
+        this.deliverTimer = Timer.builder("chat.fanout")
+                .description("Time to serialize a chat message and hand it to the broker for every destination")
+                .register(meterRegistry);
+    }
+
+    public void deliver(Concersation_Message msg) {
+        Timer.Sample sample = Timer.start();
+        Message<byte[]> frame = wireCodec.frame(msg);
+        for (String destination : destinationsFor(msg)) {
+            messagingTemplate.send(destination, frame);
+        }
+        sample.stop(deliverTimer);
+    }
+
+    public void send(String destination, Object payload) {
+        messagingTemplate.send(destination, wireCodec.frame(payload));
+    }
+
+    public void sendToUser(String user, String destination, Object payload) {
+        messagingTemplate.send(userDestination(user, destination), wireCodec.frame(payload));
+    }
+
+    // only to one of the user's sessions, e.g. a reconnect catch-up
+    public void sendToSession(String user, String sessionId, String destination, Object payload) {
+        Message<byte[]> frame = wireCodec.frame(payload);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(frame);
+        accessor.setSessionId(sessionId);
+        messagingTemplate.send(userDestination(user, destination),
+                MessageBuilder.createMessage(frame.getPayload(), accessor.getMessageHeaders()));
+    }
+
+    List<String> destinationsFor(Concersation_Message msg) {
+        String sender = msg.getSenderId();
+        String receiver = msg.getReceiverId();
+        List<String> destinations = new ArrayList<>(5);
+
+        if (userQueues) {
+            destinations.add(userDestination(receiver, "/queue/messages"));
+            if (!sender.equals(receiver)) {
+                destinations.add(userDestination(sender, "/queue/messages"));
+            }
+        }
+        if (conversationTopic) {
+            String chatId = msg.getConversationId() != null
+                    ? msg.getConversationId()
+                    : Concersation_Message.conversationIdOf(sender, receiver);
+            destinations.add("/topic/chat/" + chatId);
+        }
+        // kept for clients that subscribe to /topic/chat/{theirUid} instead of their user queue
+        if (legacyUserTopics) {
+            destinations.add("/topic/chat/" + sender);
+            if (!sender.equals(receiver)) {
+                destinations.add("/topic/chat/" + receiver);
+            }
+        }
+        return destinations;
+    }
+
+    private String userDestination(String user, String destination) {
+        return "/user/" + user.replace("/", "%2F") + destination;
+    }
+}
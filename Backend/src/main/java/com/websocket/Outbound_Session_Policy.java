@@ -0,0 +1,266 @@
+package com.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-session outbound policy. Every frame handed to a session's send buffer is counted on the
+ * clientOutboundChannel, and frames written to the socket are counted by a thin session decorator;
+ * the difference is that session's backlog. Writes are matched to queued frames by kind (regular,
+ * heartbeat, ERROR), so an ERROR or heartbeat that the STOMP handler writes without going through
+ * the channel is not counted as written and cannot push the backlog out of step. Past the low-priority threshold
+ * typing and presence frames are dropped so chat messages keep flowing; past the hard limit, or
+ * when a single write has been stuck longer than the stall timeout, the session is closed.
+ * Spring's own send-buffer and send-time limits stay in place behind this as a backstop.
+ */
+@Component
+@Slf4j
+public class Outbound_Session_Policy implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private final int lowPriorityThreshold;
+    private final int maxQueuedMessages;
+    private final long stallTimeoutMs;
+    private final List<String> lowPriorityDestinations;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    private final Counter droppedLowPriority;
+    private final Counter closedSlow;
+    private final DistributionSummary queueDepth;
+
+    public Outbound_Session_Policy(MeterRegistry meterRegistry,
+                                   @Value("${chat.outbound.low-priority-threshold:32}") int lowPriorityThreshold,
+                                   @Value("${chat.outbound.max-queued-messages:512}") int maxQueuedMessages,
+                                   @Value("${chat.outbound.stall-timeout-ms:10000}") long stallTimeoutMs,
+                                   @Value("${chat.outbound.low-priority-destinations:/user/queue/typing,/topic/user-status}") List<String> lowPriorityDestinations) {
+        this.lowPriorityThreshold = lowPriorityThreshold;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.stallTimeoutMs = stallTimeoutMs;
+        this.lowPriorityDestinations = lowPriorityDestinations;
+
+        this.droppedLowPriority = meterRegistry.counter("chat.outbound.dropped", "reason", "low-priority");
+        this.closedSlow = meterRegistry.counter("chat.outbound.sessions.closed", "reason", "slow-consumer");
+        this.queueDepth = DistributionSummary.builder("chat.outbound.session.queue.depth")
+                .description("Backlog of the receiving session when a message is queued to it")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("chat.outbound.session.queue.deepest", this, Outbound_Session_Policy::maxDepth)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionState state = new SessionState(session);
+                sessions.put(session.getId(), state);
+                super.afterConnectionEstablished(new CountingSession(session, state));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SessionState state = sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (state == null) {
+            return message;
+        }
+
+        long depth = state.depth();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == SimpMessageType.MESSAGE) {
+            if (depth >= maxQueuedMessages || state.stalledFor(System.currentTimeMillis()) > stallTimeoutMs) {
+                closeSlow(state, depth);
+                return null;
+            }
+            if (depth >= lowPriorityThreshold && isLowPriority(destinationOf(message))) {
+                droppedLowPriority.increment();
+                return null;
+            }
+            queueDepth.record(depth + 1);
+        }
+
+        state.queued(kindOf(message, type));
+        return message;
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    public long depthOf(String sessionId) {
+        SessionState state = sessions.get(sessionId);
+        return state != null ? state.depth() : 0;
+    }
+
+    double maxDepth() {
+        long max = 0;
+        for (SessionState state : sessions.values()) {
+            max = Math.max(max, state.depth());
+        }
+        return max;
+    }
+
+    // user destinations arrive resolved to /queue/...-user{session}; match on the /user/queue/... the client subscribed to
+    private static String destinationOf(Message<?> message) {
+        String original = SimpMessageHeaderAccessor.getFirstNativeHeader(
+                SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, message.getHeaders());
+        return original != null ? original : SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+    }
+
+    private boolean isLowPriority(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : lowPriorityDestinations) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closeSlow(SessionState state, long depth) {
+        if (!state.closing.compareAndSet(false, true)) {
+            return;
+        }
+        closedSlow.increment();
+        log.warn("Closing slow WebSocket session {} ({} messages queued)", state.session.getId(), depth);
+        try {
+            state.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            log.debug("Close of slow session {} failed: {}", state.session.getId(), e.getMessage());
+        }
+    }
+
+    private static FrameKind kindOf(Message<?> message, SimpMessageType type) {
+        if (type == SimpMessageType.HEARTBEAT) {
+            return FrameKind.HEARTBEAT;
+        }
+        if (type != SimpMessageType.MESSAGE && StompHeaderAccessor.wrap(message).getCommand() == StompCommand.ERROR) {
+            return FrameKind.ERROR;
+        }
+        return FrameKind.REGULAR;
+    }
+
+    // encoded STOMP frames: a heartbeat is a bare end-of-line, anything else starts with its command
+    private static FrameKind kindOf(WebSocketMessage<?> message) {
+        CharSequence head;
+        if (message instanceof TextMessage text) {
+            head = text.getPayload();
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            head = StandardCharsets.US_ASCII.decode(payload.slice(payload.position(), Math.min(payload.remaining(), 5)));
+        } else {
+            return FrameKind.REGULAR;
+        }
+        if (head.isEmpty() || head.charAt(0) == '\n' || head.charAt(0) == '\r') {
+            return FrameKind.HEARTBEAT;
+        }
+        return head.toString().startsWith("ERROR") ? FrameKind.ERROR : FrameKind.REGULAR;
+    }
+
+    private enum FrameKind { REGULAR, HEARTBEAT, ERROR }
+
+    private static final class SessionState {
+        private final WebSocketSession session;
+        private final AtomicLong[] queued = counters();
+        private final AtomicLong[] written = counters();
+        private final AtomicBoolean closing = new AtomicBoolean();
+        private volatile long writeStartedAt;
+
+        private SessionState(WebSocketSession session) {
+            this.session = session;
+        }
+
+        private static AtomicLong[] counters() {
+            AtomicLong[] counters = new AtomicLong[FrameKind.values().length];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = new AtomicLong();
+            }
+            return counters;
+        }
+
+        private void queued(FrameKind kind) {
+            queued[kind.ordinal()].incrementAndGet();
+        }
+
+        // only a write matching a queued frame of its kind counts; a direct write has nothing to match
+        private void written(FrameKind kind) {
+            AtomicLong queuedOfKind = queued[kind.ordinal()];
+            written[kind.ordinal()].getAndUpdate(count -> count < queuedOfKind.get() ? count + 1 : count);
+        }
+
+        private long depth() {
+            long depth = 0;
+            for (int i = 0; i < queued.length; i++) {
+                depth += Math.max(0, queued[i].get() - written[i].get());
+            }
+            return depth;
+        }
+
+        private long stalledFor(long now) {
+            long started = writeStartedAt;
+            return started == 0 ? 0 : now - started;
+        }
+    }
+
+    // sits under Spring's buffering decorator, so it sees frames as they reach the socket
+    private static final class CountingSession extends WebSocketSessionDecorator {
+
+        private final SessionState state;
+
+        private CountingSession(WebSocketSession session, SessionState state) {
+            super(session);
+            this.state = state;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            state.writeStartedAt = System.currentTimeMillis();
+            try {
+                super.sendMessage(message);
+            } finally {
+                state.writeStartedAt = 0;
+                state.written(kindOf(message));
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.websocket;
+
+import com.model.Presence_Event;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side view of who is online, driven by STOMP session lifecycle events. A user is online
+ * while at least one of their sessions is open; only online/offline transitions are broadcast
+ * to /topic/user-status. Both maps are ConcurrentHashMaps, so updates for different users only
+ * contend on their own hash bin. Each transition takes its version inside the atomic update of the
+ * user's count, so a disconnect/reconnect whose broadcasts overtake each other still carries the
+ * right order for clients to apply.
+ */
+@Component
+@Slf4j
+public class Presence_Registry {
+
+    private static final String ANONYMOUS_PREFIX = "anonymous-";
+
+    private final Message_Fanout messageFanout;
+    private final int maxSessions;
+
+    private final ConcurrentHashMap<String, String> sessionToUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> sessionsPerUser = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    public Presence_Registry(Message_Fanout messageFanout,
+                             MeterRegistry meterRegistry,
+                             @Value("${chat.presence.max-sessions:200000}") int maxSessions) {
+        this.messageFanout = messageFanout;
+        this.maxSessions = maxSessions;
+
+        Gauge.builder("chat.presence.sessions", sessionToUser, ConcurrentHashMap::size).register(meterRegistry);
+        Gauge.builder("chat.presence.users.online", sessionsPerUser, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (user != null && sessionId != null) {
+            sessionOpened(sessionId, user.getName());
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        // may be published more than once per session; the second call finds nothing to remove
+        sessionClosed(event.getSessionId());
+    }
+
+    public boolean sessionOpened(String sessionId, String userId) {
+        // sessions without a verified token get a throwaway anonymous-... name and are not shown as users
+        if (userId.startsWith(ANONYMOUS_PREFIX)) {
+            return false;
+        }
+        if (sessionToUser.size() >= maxSessions) {
+            log.warn("Presence registry full ({} sessions), not tracking session {}", maxSessions, sessionId);
+            return false;
+        }
+        if (sessionToUser.putIfAbsent(sessionId, userId) != null) {
+            return false;
+        }
+        long[] version = {0};
+        sessionsPerUser.compute(userId, (uid, count) -> {
+            if (count == null) {
+                version[0] = versions.incrementAndGet();
+                return 1;
+            }
+            return count + 1;
+        });
+        if (version[0] != 0) {
+            broadcast(Presence_Event.of(userId, "online", "connect", version[0]));
+        }
+        return true;
+    }
+
+    public boolean sessionClosed(String sessionId) {
+        if (sessionId == null) {
+            return false;
+        }
+        String userId = sessionToUser.remove(sessionId);
+        if (userId == null) {
+            return false;
+        }
+        long[] version = {0};
+        sessionsPerUser.computeIfPresent(userId, (uid, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            version[0] = versions.incrementAndGet();
+            return null;
+        });
+        if (version[0] != 0) {
+            broadcast(Presence_Event.of(userId, "offline", "disconnect", version[0]));
+        }
+        return true;
+    }
+
+    /**
+     * Publishes a status the user picked (away, busy, ...) while they have an open session here.
+     * online/offline only ever come from the session lifecycle; returns null when nothing was sent.
+     */
+    public Presence_Event statusChanged(String userId, String status) {
+        if (status == null || "online".equals(status) || "offline".equals(status)) {
+            return null;
+        }
+        long[] version = {0};
+        sessionsPerUser.computeIfPresent(userId, (uid, count) -> {
+            version[0] = versions.incrementAndGet();
+            return count;
+        });
+        if (version[0] == 0) {
+            return null;
+        }
+        Presence_Event event = Presence_Event.of(userId, status, "status", version[0]);
+        broadcast(event);
+        return event;
+    }
+
+    public boolean isTracked(String sessionId) {
+        return sessionToUser.containsKey(sessionId);
+    }
+
+    public boolean isOnline(String userId) {
+        return sessionsPerUser.containsKey(userId);
+    }
+
+    public List<String> onlineUsers() {
+        return new ArrayList<>(sessionsPerUser.keySet());
+    }
+
+    public int onlineUserCount() {
+        return sessionsPerUser.size();
+    }
+
+    public int sessionCount() {
+        return sessionToUser.size();
+    }
+
+    private void broadcast(Presence_Event event) {
+        try {
+            messageFanout.send("/topic/user-status", event);
+        } catch (Exception e) {
+            log.warn("Presence broadcast for {} failed: {}", event.userId(), e.getMessage());
+        }
+    }
+}
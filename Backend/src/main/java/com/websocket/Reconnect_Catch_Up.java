@@ -0,0 +1,204 @@
+package com.websocket;
+
+import com.model.Catch_Up_Batch;
+import com.model.Concersation_Message;
+import com.service.MessageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconnect catch-up. A client that sends last-seq (on CONNECT or on its SUBSCRIBE to
+ * /user/queue/catch-up) gets every message of its delivery stream after that number, in
+ * Catch_Up_Batch frames on that one session. Cost follows the size of the gap, not the history;
+ * past max-messages the final batch is marked truncated and the client falls back to /history.
+ * Seqs are taken before the message is written, so writes can land out of order: a missing seq
+ * just below a recent message is waited for (up to gap-wait-ms) instead of being skipped, while
+ * an old hole, left by a write that failed, is passed over.
+ */
+@Component
+@Slf4j
+public class Reconnect_Catch_Up implements ExecutorChannelInterceptor {
+
+    public static final String LAST_SEQ_HEADER = "last-seq";
+    public static final String DESTINATION = "/queue/catch-up";
+
+    private static final long GAP_POLL_MS = 50;
+
+    private final MessageService messageService;
+    private final Message_Fanout messageFanout;
+    private final int batchSize;
+    private final int maxMessages;
+    private final long gapWaitMs;
+    private final ThreadPoolExecutor workers;
+    private final ConcurrentHashMap<String, Long> connectLastSeq = new ConcurrentHashMap<>();
+    private final Counter replayed;
+
+    public Reconnect_Catch_Up(MessageService messageService,
+                              @Lazy Message_Fanout messageFanout,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.catch-up.batch-size:100}") int batchSize,
+                              @Value("${chat.catch-up.max-messages:5000}") int maxMessages,
+                              @Value("${chat.catch-up.workers:2}") int workerCount,
+                              @Value("${chat.catch-up.gap-wait-ms:5000}") long gapWaitMs) {
+        this.messageService = messageService;
+        this.messageFanout = messageFanout;
+        this.batchSize = batchSize;
+        this.maxMessages = maxMessages;
+        this.gapWaitMs = gapWaitMs;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), r -> {
+                    Thread thread = new Thread(r, "catch-up");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.replayed = meterRegistry.counter("chat.catch-up.messages");
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Long lastSeq = parse(accessor.getFirstNativeHeader(LAST_SEQ_HEADER));
+        if (lastSeq != null && accessor.getSessionId() != null) {
+            connectLastSeq.put(accessor.getSessionId(), lastSeq);
+        }
+    }
+
+    // runs once the user destination handler has registered the subscription, so no batch can outrun it
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || !(handler instanceof UserDestinationMessageHandler)) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        Principal user = accessor.getUser();
+        String sessionId = accessor.getSessionId();
+        if (accessor.getCommand() != StompCommand.SUBSCRIBE || user == null || sessionId == null
+                || !("/user" + DESTINATION).equals(accessor.getDestination())) {
+            return;
+        }
+        Long lastSeq = parse(accessor.getFirstNativeHeader(LAST_SEQ_HEADER));
+        if (lastSeq == null) {
+            lastSeq = connectLastSeq.remove(sessionId);
+        }
+        if (lastSeq == null) {
+            return;
+        }
+
+        long from = lastSeq;
+        try {
+            workers.execute(() -> replay(user.getName(), sessionId, from));
+        } catch (RejectedExecutionException e) {
+            log.warn("Catch-up queue full, {} must reload history", user.getName());
+            messageFanout.sendToSession(user.getName(), sessionId, DESTINATION, new Catch_Up_Batch(List.of(), from, true, true));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        connectLastSeq.remove(event.getSessionId());
+    }
+
+    void replay(String userId, String sessionId, long lastSeq) {
+        long cursor = lastSeq;
+        int sent = 0;
+        long waited = 0;
+        try {
+            while (true) {
+                List<Concersation_Message> batch = messageService.getMessagesAfterSeq(userId, cursor, batchSize);
+                int contiguous = contiguousPrefix(batch, userId, cursor);
+                if (contiguous < batch.size() && waited < gapWaitMs && isRecent(batch.get(contiguous))) {
+                    // the next seq is taken but its write has not landed yet: send what is in order and re-read
+                    List<Concersation_Message> ready = batch.subList(0, contiguous);
+                    if (!ready.isEmpty()) {
+                        cursor = ready.get(ready.size() - 1).seqFor(userId);
+                        sent += ready.size();
+                        replayed.increment(ready.size());
+                        messageFanout.sendToSession(userId, sessionId, DESTINATION,
+                                new Catch_Up_Batch(List.copyOf(ready), cursor, false, false));
+                    }
+                    Thread.sleep(GAP_POLL_MS);
+                    waited += GAP_POLL_MS;
+                    continue;
+                }
+
+                boolean full = batch.size() == batchSize;
+                if (!batch.isEmpty()) {
+                    cursor = batch.get(batch.size() - 1).seqFor(userId);
+                    sent += batch.size();
+                    replayed.increment(batch.size());
+                }
+                boolean truncated = full && sent >= maxMessages;
+                boolean done = !full || truncated;
+                messageFanout.sendToSession(userId, sessionId, DESTINATION, new Catch_Up_Batch(batch, cursor, done, truncated));
+                if (done) {
+                    break;
+                }
+            }
+            log.debug("Caught up {} on session {} with {} messages after seq {}", userId, sessionId, sent, lastSeq);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Catch-up for {} stopped after {} messages: {}", userId, sent, e.getMessage());
+        }
+    }
+
+    // how many messages at the head of the batch continue the stream after afterSeq without a hole
+    static int contiguousPrefix(List<Concersation_Message> batch, String userId, long afterSeq) {
+        long expected = afterSeq + 1;
+        for (int i = 0; i < batch.size(); i++) {
+            Long seq = batch.get(i).seqFor(userId);
+            if (seq == null || seq != expected) {
+                return i;
+            }
+            expected++;
+        }
+        return batch.size();
+    }
+
+    // a message this new may still have lower-seq neighbours in flight
+    private boolean isRecent(Concersation_Message msg) {
+        return msg.getTimestamp() != null
+                && msg.getTimestamp().isAfter(LocalDateTime.now().minus(Duration.ofMillis(gapWaitMs)));
+    }
+
+    private static Long parse(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
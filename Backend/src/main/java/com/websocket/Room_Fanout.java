@@ -0,0 +1,77 @@
+package com.websocket;
+
+import com.model.Room_Message;
+import com.service.NotificationDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Delivers a room message with a single publish to /topic/room/{roomId}: the payload is serialized
+ * once and the broker copies it to every subscribed session, so the cost on this thread does not
+ * grow with the member count. Members that are not online get one batched push notification per
+ * room instead of one per member.
+ */
+@Component
+@Slf4j
+public class Room_Fanout {
+
+    public static final String TOPIC_PREFIX = "/topic/room/";
+
+    private final Message_Fanout messageFanout;
+    private final Presence_Registry presenceRegistry;
+    private final NotificationDispatcher notificationDispatcher;
+    private final Timer publishTimer;
+    private final DistributionSummary roomSize;
+    private final Counter offlineMembers;
+
+    public Room_Fanout(Message_Fanout messageFanout,
+                       Presence_Registry presenceRegistry,
+                       NotificationDispatcher notificationDispatcher,
+                       MeterRegistry meterRegistry) {
+        this.messageFanout = messageFanout;
+        this.presenceRegistry = presenceRegistry;
+        this.notificationDispatcher = notificationDispatcher;
+        this.publishTimer = Timer.builder("chat.rooms.fanout")
+                .description("Time to hand one room message to the broker")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.roomSize = DistributionSummary.builder("chat.rooms.fanout.members")
+                .description("Members of the room each message was published to")
+                .register(meterRegistry);
+        this.offlineMembers = meterRegistry.counter("chat.rooms.offline.members");
+    }
+
+    public void deliver(Room_Message msg, Set<String> members) {
+        publishTimer.record(() -> messageFanout.send(TOPIC_PREFIX + msg.getRoomId(), msg));
+        roomSize.record(members.size());
+
+        List<String> offline = members.stream()
+                .filter(member -> !member.equals(msg.getSenderId()) && !presenceRegistry.isOnline(member))
+                .toList();
+        if (offline.isEmpty()) {
+            return;
+        }
+        offlineMembers.increment(offline.size());
+        try {
+            notificationDispatcher.submitRoom(msg.getRoomId(), offline, msg.getSenderId(), msg.getMessage(),
+                    msg.getSenderName());
+        } catch (Exception e) {
+            log.warn("Room push notification for {} failed: {}", msg.getRoomId(), e.getMessage());
+        }
+    }
+
+    public static String roomIdOf(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return null;
+        }
+        String roomId = destination.substring(TOPIC_PREFIX.length());
+        return roomId.isEmpty() || roomId.contains("/") ? null : roomId;
+    }
+}
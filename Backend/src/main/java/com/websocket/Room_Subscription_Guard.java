@@ -0,0 +1,138 @@
+package com.websocket;
+
+import com.service.RoomService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Only members may SUBSCRIBE to /topic/room/{roomId}; anything else gets a STOMP ERROR frame.
+ * Accepted room subscriptions are tracked per session. When a member is removed through this node
+ * their subscriptions to the room are unsubscribed at the broker; on the outbound channel a room
+ * frame for a subscriber who is no longer a member is dropped along with the subscription, which
+ * covers removals made on other nodes once the member cache has expired.
+ */
+@Component
+@Slf4j
+public class Room_Subscription_Guard implements ChannelInterceptor {
+
+    private final RoomService roomService;
+    private final MessageChannel clientInboundChannel;
+
+    // sessionId -> subscriptionId -> subscription
+    private final Map<String, Map<String, Room_Subscription>> sessions = new ConcurrentHashMap<>();
+
+    private record Room_Subscription(String roomId, String sessionId, String subscriptionId, String userId) {
+    }
+
+    // lazy: this guard is itself an interceptor of the inbound channel
+    public Room_Subscription_Guard(RoomService roomService,
+                                   @Lazy @Qualifier("clientInboundChannel") MessageChannel clientInboundChannel) {
+        this.roomService = roomService;
+        this.clientInboundChannel = clientInboundChannel;
+        roomService.onMemberRemoved(this::dropSubscriptions);
+    }
+
+    // registered on both client channels: SUBSCRIBE/UNSUBSCRIBE inbound, room frames outbound
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == SimpMessageType.SUBSCRIBE) {
+            return subscribe(message);
+        }
+        if (type == SimpMessageType.UNSUBSCRIBE) {
+            forget(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()),
+                    SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+        } else if (type == SimpMessageType.MESSAGE) {
+            return deliver(message);
+        }
+        return message;
+    }
+
+    private Message<?> subscribe(Message<?> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(Room_Fanout.TOPIC_PREFIX)) {
+            return message;
+        }
+
+        String roomId = Room_Fanout.roomIdOf(destination);
+        Principal user = accessor.getUser();
+        if (roomId == null || user == null || !roomService.isMember(roomId, user.getName())) {
+            log.warn("Rejected subscription to {} by {}", destination, user != null ? user.getName() : "anonymous");
+            throw new MessageDeliveryException(message, "Not a member of " + destination);
+        }
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        if (sessionId != null && subscriptionId != null) {
+            sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                    .put(subscriptionId, new Room_Subscription(roomId, sessionId, subscriptionId, user.getName()));
+        }
+        return message;
+    }
+
+    private Message<?> deliver(Message<?> message) {
+        Map<String, Room_Subscription> subscriptions = sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (subscriptions == null) {
+            return message;
+        }
+        Room_Subscription subscription = subscriptions.get(SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+        if (subscription == null || roomService.isMember(subscription.roomId(), subscription.userId())) {
+            return message;
+        }
+        unsubscribe(subscription);
+        return null;
+    }
+
+    private void dropSubscriptions(String roomId, String userId) {
+        for (Map<String, Room_Subscription> subscriptions : sessions.values()) {
+            for (Room_Subscription subscription : subscriptions.values()) {
+                if (subscription.roomId().equals(roomId) && subscription.userId().equals(userId)) {
+                    unsubscribe(subscription);
+                }
+            }
+        }
+    }
+
+    // the broker (simple or relay) drops it like a client UNSUBSCRIBE; only the first caller sends it
+    private void unsubscribe(Room_Subscription subscription) {
+        if (!forget(subscription.sessionId(), subscription.subscriptionId())) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+        accessor.setSessionId(subscription.sessionId());
+        accessor.setSubscriptionId(subscription.subscriptionId());
+        clientInboundChannel.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        log.info("Dropped subscription of {} to room {} after removal", subscription.userId(), subscription.roomId());
+    }
+
+    private boolean forget(String sessionId, String subscriptionId) {
+        Map<String, Room_Subscription> subscriptions = sessionId != null ? sessions.get(sessionId) : null;
+        return subscriptions != null && subscriptionId != null && subscriptions.remove(subscriptionId) != null;
+    }
+
+    public int subscriptionCount() {
+        return sessions.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+}
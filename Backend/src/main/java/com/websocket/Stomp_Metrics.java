@@ -0,0 +1,197 @@
+package com.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inbound STOMP instrumentation. Every client frame is counted by command and destination, frames
+ * for /app/** are timed through their @MessageMapping handler, and session/subscription gauges
+ * follow the STOMP lifecycle. Destinations that embed ids are collapsed to a pattern and the number
+ * of distinct destinations is capped, so tags stay low-cardinality. Meters are created once per
+ * key; the per-frame cost is a header read, a map lookup and the increment.
+ */
+@Component
+public class Stomp_Metrics implements ExecutorChannelInterceptor {
+
+    private static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxDestinations;
+
+    private final Map<SimpMessageType, ConcurrentHashMap<String, Counter>> frameCounters =
+            new EnumMap<>(SimpMessageType.class);
+    private final ConcurrentHashMap<String, Timer> handlerTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final AtomicLong subscriptions = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final DistributionSummary sendBytes;
+    private final ThreadLocal<long[]> handleStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    public Stomp_Metrics(MeterRegistry meterRegistry,
+                         @Value("${chat.metrics.stomp.max-destinations:100}") int maxDestinations) {
+        this.meterRegistry = meterRegistry;
+        this.maxDestinations = maxDestinations;
+        for (SimpMessageType type : SimpMessageType.values()) {
+            frameCounters.put(type, new ConcurrentHashMap<>());
+        }
+
+        this.sendBytes = DistributionSummary.builder("chat.stomp.inbound.bytes")
+                .description("Payload size of inbound SEND frames")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.stomp.sessions", subscriptionsBySession, ConcurrentHashMap::size)
+                .description("Open STOMP sessions, authenticated or not")
+                .register(meterRegistry);
+        Gauge.builder("chat.stomp.subscriptions", subscriptions, AtomicLong::get)
+                .description("Active subscriptions across all sessions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        if (type == null) {
+            return message;
+        }
+        framesReceived.incrementAndGet();
+        String destination = patternOf(SimpMessageHeaderAccessor.getDestination(headers));
+        frameCounter(type, destination).increment();
+        if (type == SimpMessageType.MESSAGE && message.getPayload() instanceof byte[] payload) {
+            sendBytes.record(payload.length);
+        }
+        return message;
+    }
+
+    // only subscriptions that made it past every interceptor (e.g. the room guard) are counted
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent || ex != null) {
+            return;
+        }
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        if (type == SimpMessageType.SUBSCRIBE) {
+            if (subscriptionsBySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriptionId)) {
+                subscriptions.incrementAndGet();
+            }
+        } else if (type == SimpMessageType.UNSUBSCRIBE) {
+            Set<String> ids = subscriptionsBySession.get(sessionId);
+            if (ids != null && ids.remove(subscriptionId)) {
+                subscriptions.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        if (handler instanceof SimpAnnotationMethodMessageHandler) {
+            handleStart.get()[0] = System.nanoTime();
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (handler instanceof SimpAnnotationMethodMessageHandler) {
+            long elapsed = System.nanoTime() - handleStart.get()[0];
+            handlerTimer(patternOf(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            subscriptionsBySession.putIfAbsent(sessionId, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        Set<String> ids = subscriptionsBySession.remove(event.getSessionId());
+        if (ids != null) {
+            subscriptions.addAndGet(-ids.size());
+        }
+    }
+
+    public int sessionCount() {
+        return subscriptionsBySession.size();
+    }
+
+    public long subscriptionCount() {
+        return subscriptions.get();
+    }
+
+    public long framesReceived() {
+        return framesReceived.get();
+    }
+
+    private Counter frameCounter(SimpMessageType type, String destination) {
+        ConcurrentHashMap<String, Counter> byDestination = frameCounters.get(type);
+        Counter counter = byDestination.get(destination);
+        if (counter != null) {
+            return counter;
+        }
+        String tag = byDestination.size() >= maxDestinations ? OTHER : destination;
+        return byDestination.computeIfAbsent(tag, d -> Counter.builder("chat.stomp.inbound.frames")
+                // SEND frames carry the message type MESSAGE
+                .tag("command", type == SimpMessageType.MESSAGE ? "SEND" : type.name())
+                .tag("destination", d)
+                .register(meterRegistry));
+    }
+
+    private Timer handlerTimer(String destination) {
+        Timer timer = handlerTimers.get(destination);
+        if (timer != null) {
+            return timer;
+        }
+        String tag = handlerTimers.size() >= maxDestinations ? OTHER : destination;
+        return handlerTimers.computeIfAbsent(tag, d -> Timer.builder("chat.stomp.inbound")
+                .description("Time spent in the @MessageMapping handler for an inbound frame")
+                .tag("destination", d)
+                .register(meterRegistry));
+    }
+
+    static String patternOf(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+        if (destination.startsWith("/topic/chat/")) {
+            return "/topic/chat/{id}";
+        }
+        if (destination.startsWith(Room_Fanout.TOPIC_PREFIX)) {
+            return Room_Fanout.TOPIC_PREFIX + "{id}";
+        }
+        return destination;
+    }
+}
@@ -0,0 +1,187 @@
+package com.websocket;
+
+import com.model.Typing_Frame;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the keystroke-driven /app/typing stream into start/stop transitions per sender/receiver
+ * pair. Repeats of the current state are dropped unless the last forward is older than the dedupe
+ * window (so receivers get an occasional keep-alive), and "typing" expires on its own after the
+ * timeout. Expiry runs on one hashed timer wheel ticked by a single thread.
+ */
+@Component
+@Slf4j
+public class Typing_State_Tracker {
+
+    private static final int WHEEL_SLOTS = 512;
+
+    private final Message_Fanout messageFanout;
+    private final long timeoutMs;
+    private final long dedupeWindowMs;
+    private final long tickMs;
+
+    private final ConcurrentHashMap<String, TypingState> states = new ConcurrentHashMap<>();
+    @SuppressWarnings("unchecked")
+    private final Set<String>[] wheel = new Set[WHEEL_SLOTS];
+
+    private final Counter inbound;
+    private final Counter forwarded;
+    private final Counter expired;
+
+    private ScheduledExecutorService ticker;
+    private long lastTick = -1;
+
+    public Typing_State_Tracker(Message_Fanout messageFanout,
+                                MeterRegistry meterRegistry,
+                                @Value("${chat.typing.timeout-ms:5000}") long timeoutMs,
+                                @Value("${chat.typing.dedupe-window-ms:3000}") long dedupeWindowMs,
+                                @Value("${chat.typing.tick-ms:250}") long tickMs) {
+        this.messageFanout = messageFanout;
+        this.timeoutMs = timeoutMs;
+        this.dedupeWindowMs = dedupeWindowMs;
+        this.tickMs = tickMs;
+        if (timeoutMs / tickMs >= WHEEL_SLOTS) {
+            throw new IllegalArgumentException("chat.typing.timeout-ms must be shorter than " + WHEEL_SLOTS + " ticks");
+        }
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+
+        this.inbound = meterRegistry.counter("chat.typing.frames.inbound");
+        this.forwarded = meterRegistry.counter("chat.typing.frames.forwarded");
+        this.expired = meterRegistry.counter("chat.typing.expired");
+        Gauge.builder("chat.typing.active", states, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "typing-timer-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                expire(System.currentTimeMillis());
+            } catch (Exception e) {
+                log.warn("Typing expiry tick failed: {}", e.getMessage());
+            }
+        }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public void onFrame(Typing_Frame frame) {
+        onFrame(frame, System.currentTimeMillis());
+    }
+
+    void onFrame(Typing_Frame frame, long now) {
+        inbound.increment();
+        String key = frame.senderId() + '\u0000' + frame.receiverId();
+        boolean[] forward = {false};
+
+        if (frame.isTyping()) {
+            states.compute(key, (k, state) -> {
+                if (state == null) {
+                    state = new TypingState(frame.senderId(), frame.receiverId());
+                    forward[0] = true;
+                } else if (now - state.lastForwardedAt >= dedupeWindowMs) {
+                    forward[0] = true;
+                }
+                if (forward[0]) {
+                    state.lastForwardedAt = now;
+                }
+                schedule(k, state, now + timeoutMs);
+                return state;
+            });
+        } else {
+            forward[0] = states.remove(key) != null;
+        }
+
+        if (forward[0]) {
+            send(frame.senderId(), frame.receiverId(), frame.isTyping());
+        }
+    }
+
+    // called by the wheel thread; also usable directly with a fixed clock
+    void expire(long now) {
+        long currentTick = now / tickMs;
+        if (lastTick < 0 || currentTick - lastTick > WHEEL_SLOTS) {
+            lastTick = currentTick - 1;
+        }
+        while (lastTick < currentTick) {
+            lastTick++;
+            expireSlot(wheel[(int) (lastTick % WHEEL_SLOTS)], now);
+        }
+    }
+
+    private void expireSlot(Set<String> slot, long now) {
+        for (Iterator<String> it = slot.iterator(); it.hasNext(); ) {
+            String key = it.next();
+            it.remove();
+            TypingState[] timedOut = {null};
+            states.computeIfPresent(key, (k, current) -> {
+                if (current.deadline > now) {
+                    // refreshed since it was put in this slot; its later slot will see it
+                    return current;
+                }
+                timedOut[0] = current;
+                return null;
+            });
+            if (timedOut[0] != null) {
+                expired.increment();
+                send(timedOut[0].senderId, timedOut[0].receiverId, false);
+            }
+        }
+    }
+
+    private void schedule(String key, TypingState state, long deadline) {
+        state.deadline = deadline;
+        long tick = (deadline + tickMs - 1) / tickMs;
+        if (tick != state.scheduledTick) {
+            state.scheduledTick = tick;
+            wheel[(int) (tick % WHEEL_SLOTS)].add(key);
+        }
+    }
+
+    private void send(String sender, String receiver, boolean typing) {
+        forwarded.increment();
+        try {
+            messageFanout.sendToUser(receiver, "/queue/typing", new Typing_Frame(sender, receiver, typing));
+        } catch (Exception e) {
+            log.warn("Typing indicator from {} to {} failed: {}", sender, receiver, e.getMessage());
+        }
+    }
+
+    private static final class TypingState {
+        private final String senderId;
+        private final String receiverId;
+        private long deadline;
+        private long lastForwardedAt;
+        private long scheduledTick = -1;
+
+        private TypingState(String senderId, String receiverId) {
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.websocket;
 
+import com.model.Ack_Frame;
+import com.model.Chat_Frame;
 import com.model.Concersation_Message;
-import com.service.FirebaseNotificationService;
+import com.model.Presence_Event;
+import com.model.Room_Message;
+import com.model.Status_Frame;
+import com.model.System_Event;
+import com.model.Typing_Frame;
 import com.service.MessageService;
+import com.service.NotificationDispatcher;
+import com.service.ReceiptService;
+import com.service.RoomService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Controller
@@ -21,14 +32,25 @@ public class WebSocket_Chat_Controller {
 
     private final MessageService messageService;
     private final SimpMessagingTemplate messagingTemplate;
-    private final FirebaseNotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final Message_Fanout messageFanout;
+    private final Presence_Registry presenceRegistry;
+    private final Typing_State_Tracker typingTracker;
+    private final ReceiptService receiptService;
+    private final RoomService roomService;
+    private final Room_Fanout roomFanout;
+    private final Stomp_Metrics stompMetrics;
 
     @MessageMapping("/chat")
-    public void handleChatMessage(@Payload Map<String, String> data, Principal principal) {
+    public void handleChatMessage(@Payload Chat_Frame frame, Principal principal) {
+        if (frame.roomId() != null) {
+            handleRoomMessage(frame, principal);
+            return;
+        }
         try {
-            String sender = data.get("senderId");
-            String receiver = data.get("receiverId");
-            String content = data.get("message");
+            String sender = frame.senderId();
+            String receiver = frame.receiverId();
+            String content = frame.message();
 
             if (sender == null || receiver == null || content == null) {
                 log.error("Invalid chat message data: missing required fields");
@@ -40,20 +62,13 @@ public class WebSocket_Chat_Controller {
             Concersation_Message storedMessage = messageService.createMessage(sender, receiver, content);
             log.info("Message saved with ID: {}", storedMessage.getId());
 
-            messagingTemplate.convertAndSendToUser(receiver, "/queue/messages", storedMessage);
-            messagingTemplate.convertAndSendToUser(sender, "/queue/messages", storedMessage);
-
-            String chatId = generateChatId(sender, receiver);
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId, storedMessage);
-            messagingTemplate.convertAndSend("/topic/chat/" + sender, storedMessage);
-            messagingTemplate.convertAndSend("/topic/chat/" + receiver, storedMessage);
+            messageFanout.deliver(storedMessage);
 
             log.info("Message dispatched via WebSocket");
 
             try {
-                String senderName = data.get("senderName");
-                notificationService.sendPushNotification(receiver, sender, content, senderName);
-                log.debug("Push notification sent");
+                notificationDispatcher.submit(receiver, sender, content, frame.senderName());
+                log.debug("Push notification queued");
             } catch (Exception e) {
                 log.warn("Push notification failed: {}", e.getMessage());
             }
@@ -63,55 +78,90 @@ public class WebSocket_Chat_Controller {
         }
     }
 
+    private void handleRoomMessage(Chat_Frame frame, Principal principal) {
+        try {
+            String sender = frame.senderId();
+            String roomId = frame.roomId();
+
+            if (sender == null || frame.message() == null) {
+                log.error("Invalid room message data: missing required fields");
+                return;
+            }
+
+            if (!isPrincipal(principal, sender)) {
+                log.warn("Unauthorized room message attempt by {} as {}",
+                        principal != null ? principal.getName() : "anonymous", sender);
+                return;
+            }
+
+            Room_Message storedMessage = roomService.postMessage(roomId, sender, frame.senderName(), frame.message());
+            log.info("Room message saved with ID: {}", storedMessage.getId());
+
+            roomFanout.deliver(storedMessage, roomService.members(roomId));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected room message: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing room message: {}", e.getMessage(), e);
+        }
+    }
+
     @MessageMapping("/typing")
-    public void handleTypingIndicator(@Payload Map<String, String> data) {
+    public void handleTypingIndicator(@Payload Typing_Frame frame) {
         try {
-            String sender = data.get("senderId");
-            String receiver = data.get("receiverId");
-            String typing = data.get("isTyping");
+            String sender = frame.senderId();
+            String receiver = frame.receiverId();
 
             if (sender == null || receiver == null) {
                 log.warn("Invalid typing indicator data");
                 return;
             }
 
-            messagingTemplate.convertAndSendToUser(receiver, "/queue/typing", Map.of(
-                    "senderId", sender,
-                    "isTyping", typing != null ? typing : "false"
-            ));
+            typingTracker.onFrame(frame);
 
-            log.debug("Typing indicator sent from {} to {}", sender, receiver);
+            log.debug("Typing indicator from {} to {} handled", sender, receiver);
 
         } catch (Exception e) {
             log.error("Error handling typing indicator: {}", e.getMessage());
         }
     }
 
+    @MessageMapping("/ack")
+    public void handleAck(@Payload Ack_Frame frame, Principal principal) {
+        try {
+            if (frame.readerId() == null || frame.conversationId() == null) {
+                log.warn("Invalid ack data");
+                return;
+            }
+
+            if (principal != null && !principal.getName().equals(frame.readerId())) {
+                log.warn("Unauthorized ack attempt by {}", principal.getName());
+                return;
+            }
+
+            receiptService.acknowledge(frame);
+
+        } catch (Exception e) {
+            log.error("Error handling ack: {}", e.getMessage());
+        }
+    }
+
     @MessageMapping("/status")
     @SendToUser("/queue/status")
-    public Map<String, String> handleUserStatus(@Payload Map<String, String> data, Principal principal) {
+    public Object handleUserStatus(@Payload Status_Frame frame, Principal principal) {
         try {
-            String user = data.get("userId");
-            String status = data.get("status");
+            String user = frame.userId();
+            String status = frame.status();
 
-            if (principal != null && !user.equals(principal.getName())) {
-                log.warn("Unauthorized status update attempt by {}", principal.getName());
+            if (!isPrincipal(principal, user)) {
+                log.warn("Unauthorized status update attempt by {}", principal != null ? principal.getName() : "anonymous");
                 return Map.of("error", "Unauthorized");
             }
 
             log.info("User {} status changed to {}", user, status);
 
-            messagingTemplate.convertAndSend("/topic/user-status", Map.of(
-                    "userId", user,
-                    "status", status,
-                    "timestamp", String.valueOf(System.currentTimeMillis())
-            ));
-
-            return Map.of(
-                    "userId", user,
-                    "status", status,
-                    "timestamp", String.valueOf(System.currentTimeMillis())
-            );
+            Presence_Event event = presenceRegistry.statusChanged(user, status);
+            return event != null ? event : Map.of("error", "Status not accepted");
 
         } catch (Exception e) {
             log.error("Error handling user status: {}", e.getMessage());
@@ -120,23 +170,26 @@ public class WebSocket_Chat_Controller {
     }
 
     @MessageMapping("/join")
-    public void handleUserJoin(@Payload Map<String, String> data, Principal principal) {
+    public void handleUserJoin(@Payload Status_Frame frame, Principal principal,
+                               SimpMessageHeaderAccessor headerAccessor) {
         try {
-            String user = data.get("userId");
-            String action = data.get("action");
+            String user = frame.userId();
+            String action = frame.action();
 
-            if (principal != null && !user.equals(principal.getName())) {
+            if (!isPrincipal(principal, user)) {
                 log.warn("Unauthorized join/leave attempt");
                 return;
             }
 
             log.info("User {} {}", user, action);
 
-            messagingTemplate.convertAndSend("/topic/user-status", Map.of(
-                    "userId", user,
-                    "action", action,
-                    "timestamp", String.valueOf(System.currentTimeMillis())
-            ));
+            // join/leave only open or close this session's presence; the registry publishes the transitions
+            String sessionId = headerAccessor.getSessionId();
+            if ("leave".equals(action)) {
+                presenceRegistry.sessionClosed(sessionId);
+            } else if (sessionId != null && !presenceRegistry.isTracked(sessionId)) {
+                presenceRegistry.sessionOpened(sessionId, user);
+            }
 
         } catch (Exception e) {
             log.error("Error handling user join/leave: {}", e.getMessage());
@@ -147,13 +200,7 @@ public class WebSocket_Chat_Controller {
         try {
             log.info("Broadcasting message: {} -> {}", msg.getSenderId(), msg.getReceiverId());
 
-            messagingTemplate.convertAndSendToUser(msg.getReceiverId(), "/queue/messages", msg);
-            messagingTemplate.convertAndSendToUser(msg.getSenderId(), "/queue/messages", msg);
-
-            String chatId = generateChatId(msg.getSenderId(), msg.getReceiverId());
-            messagingTemplate.convertAndSend("/topic/chat/" + chatId, msg);
-            messagingTemplate.convertAndSend("/topic/chat/" + msg.getSenderId(), msg);
-            messagingTemplate.convertAndSend("/topic/chat/" + msg.getReceiverId(), msg);
+            messageFanout.deliver(msg);
 
             log.info("Message broadcast complete: {}", msg.getId());
 
@@ -172,7 +219,7 @@ public class WebSocket_Chat_Controller {
 
             messagingTemplate.convertAndSendToUser(user, "/queue/test", Map.of(
                     "echo", "Test successful: " + message,
-                    "timestamp", String.valueOf(System.currentTimeMillis()),
+                    "timestamp", System.currentTimeMillis(),
                     "principal", principal != null ? principal.getName() : "anonymous"
             ));
 
@@ -182,23 +229,23 @@ public class WebSocket_Chat_Controller {
     }
 
     @MessageMapping("/connect")
-    public void handleUserConnect(@Payload Map<String, String> data, Principal principal) {
+    public void handleUserConnect(@Payload Status_Frame frame, Principal principal,
+                                  SimpMessageHeaderAccessor headerAccessor) {
         try {
-            String user = data.get("userId");
+            String user = frame.userId();
+            if (!isPrincipal(principal, user)) {
+                log.warn("Unauthorized connect announcement for {}", user);
+                return;
+            }
             log.info("User connected: {}", user);
 
-            messagingTemplate.convertAndSendToUser(user, "/queue/system", Map.of(
-                    "type", "welcome",
-                    "message", "Connection established",
-                    "timestamp", String.valueOf(System.currentTimeMillis())
-            ));
+            messageFanout.sendToUser(user, "/queue/system", System_Event.of("welcome", "Connection established"));
 
-            messagingTemplate.convertAndSend("/topic/user-status", Map.of(
-                    "userId", user,
-                    "status", "online",
-                    "action", "connect",
-                    "timestamp", String.valueOf(System.currentTimeMillis())
-            ));
+            // covers sessions the CONNECT event did not register, e.g. after the registry was full
+            String sessionId = headerAccessor.getSessionId();
+            if (sessionId != null && !presenceRegistry.isTracked(sessionId)) {
+                presenceRegistry.sessionOpened(sessionId, user);
+            }
 
         } catch (Exception e) {
             log.error("Error handling user connection: {}", e.getMessage());
@@ -206,25 +253,21 @@ public class WebSocket_Chat_Controller {
     }
 
     @MessageMapping("/disconnect")
-    public void handleUserDisconnect(@Payload Map<String, String> data, Principal principal) {
+    public void handleUserDisconnect(@Payload Status_Frame frame, Principal principal,
+                                     SimpMessageHeaderAccessor headerAccessor) {
         try {
-            String user = data.get("userId");
+            String user = frame.userId();
             log.info("User disconnected: {}", user);
 
-            messagingTemplate.convertAndSend("/topic/user-status", Map.of(
-                    "userId", user,
-                    "status", "offline",
-                    "action", "disconnect",
-                    "timestamp", String.valueOf(System.currentTimeMillis())
-            ));
+            presenceRegistry.sessionClosed(headerAccessor.getSessionId());
 
         } catch (Exception e) {
             log.error("Error handling user disconnect: {}", e.getMessage());
         }
     }
 
-    private String generateChatId(String u1, String u2) {
-        return u1.compareTo(u2) < 0 ? u1 + "_" + u2 : u2 + "_" + u1;
+    private static boolean isPrincipal(Principal principal, String userId) {
+        return principal != null && userId != null && principal.getName().equals(userId);
     }
 
     private boolean isValidMessageData(Map<String, String> data) {
@@ -241,19 +284,26 @@ public class WebSocket_Chat_Controller {
     }
 
     public Map<String, Object> getConnectionStats() {
-        return Map.of(
-                "service", "ChatWebSocketController",
-                "status", "active",
-                "timestamp", System.currentTimeMillis(),
-                "endpoints", Map.of(
-                        "chat", "/app/chat",
-                        "typing", "/app/typing",
-                        "status", "/app/status",
-                        "join", "/app/join",
-                        "test", "/app/test",
-                        "connect", "/app/connect",
-                        "disconnect", "/app/disconnect"
-                )
-        );
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("service", "ChatWebSocketController");
+        stats.put("status", "active");
+        stats.put("timestamp", System.currentTimeMillis());
+        stats.put("sessions", stompMetrics.sessionCount());
+        stats.put("authenticatedSessions", presenceRegistry.sessionCount());
+        stats.put("onlineUsers", presenceRegistry.onlineUserCount());
+        stats.put("subscriptions", stompMetrics.subscriptionCount());
+        stats.put("framesReceived", stompMetrics.framesReceived());
+        stats.put("notificationQueueDepth", notificationDispatcher.getQueueDepth());
+        stats.put("endpoints", Map.of(
+                "chat", "/app/chat",
+                "typing", "/app/typing",
+                "ack", "/app/ack",
+                "status", "/app/status",
+                "join", "/app/join",
+                "test", "/app/test",
+                "connect", "/app/connect",
+                "disconnect", "/app/disconnect"
+        ));
+        return stats;
     }
 }
@@ -0,0 +1,156 @@
+package com.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.function.SingletonSupplier;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wire format of outbound STOMP payloads, negotiated per session. Payloads are encoded once as
+ * JSON for every subscriber; a session whose CONNECT frame carries {@code accept:application/cbor}
+ * gets its copy transcoded to CBOR on the clientOutboundChannel, so JSON clients on the same topic
+ * are unaffected. The transcoded bytes are cached by payload identity, so a frame fanned out to
+ * many CBOR sessions is converted once. Inbound frames are decoded according to their own
+ * content-type header, see WebSocket_Config.
+ */
+@Component
+@Slf4j
+public class Wire_Codec implements ChannelInterceptor {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+    public static final String ACCEPT_HEADER = "accept";
+
+    private static final String CONTENT_TYPE_HEADER = "content-type";
+
+    private final ObjectMapper mapper;
+    // built on first use, so JSON-only deployments never copy the mapper
+    private final SingletonSupplier<ObjectMapper> cborMapper;
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    // weak keys compare by identity: one entry per shared payload array while it is still being delivered
+    private final Cache<byte[], byte[]> transcoded = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(1024)
+            .build();
+
+    public Wire_Codec(ObjectMapper objectMapper) {
+        this.mapper = objectMapper;
+        this.cborMapper = SingletonSupplier.of(() -> cborMapper(objectMapper));
+    }
+
+    // same modules and features as the JSON mapper, binary CBOR output
+    public static ObjectMapper cborMapper(ObjectMapper objectMapper) {
+        return objectMapper.copyWith(new CBORFactory());
+    }
+
+    public MimeType getContentType() {
+        return MimeTypeUtils.APPLICATION_JSON;
+    }
+
+    public byte[] encode(Object payload) {
+        try {
+            return mapper.writeValueAsBytes(payload);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to encode " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    // immutable, so SimpMessagingTemplate copies the headers per destination and keeps the payload reference
+    public Message<byte[]> frame(Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(getContentType());
+        Message<byte[]> frame = MessageBuilder.createMessage(encode(payload), accessor.getMessageHeaders());
+        accessor.setImmutable();
+        return frame;
+    }
+
+    public boolean isCbor(String sessionId) {
+        return sessionId != null && cborSessions.contains(sessionId);
+    }
+
+    // registered on both client channels: CONNECT inbound picks the format, MESSAGE outbound applies it
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        if (type == SimpMessageType.CONNECT) {
+            negotiate(StompHeaderAccessor.wrap(message));
+            return message;
+        }
+        if (type != SimpMessageType.MESSAGE || !isCbor(SimpMessageHeaderAccessor.getSessionId(headers))
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        MimeType contentType = accessor.getContentType();
+        if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            return message;
+        }
+        return toCbor(message, accessor, payload);
+    }
+
+    private void negotiate(StompHeaderAccessor connect) {
+        String sessionId = connect.getSessionId();
+        List<String> accepted = connect.getNativeHeader(ACCEPT_HEADER);
+        if (sessionId == null || accepted == null) {
+            return;
+        }
+        for (String value : accepted) {
+            for (MimeType type : MimeTypeUtils.parseMimeTypes(value)) {
+                if (APPLICATION_CBOR.equalsTypeAndSubtype(type)) {
+                    cborSessions.add(sessionId);
+                    log.debug("Session {} negotiated CBOR payloads", sessionId);
+                    return;
+                }
+            }
+        }
+    }
+
+    private Message<?> toCbor(Message<?> message, SimpMessageHeaderAccessor accessor, byte[] json) {
+        byte[] cbor;
+        try {
+            cbor = transcoded.get(json, this::transcode);
+        } catch (IllegalStateException e) {
+            log.warn("Sending JSON to CBOR session {}: {}", SimpMessageHeaderAccessor.getSessionId(message.getHeaders()), e.getMessage());
+            return message;
+        }
+        accessor.setContentType(APPLICATION_CBOR);
+        // frames relayed from an external broker carry the STOMP header as well
+        if (accessor.getFirstNativeHeader(CONTENT_TYPE_HEADER) != null) {
+            accessor.setNativeHeader(CONTENT_TYPE_HEADER, APPLICATION_CBOR.toString());
+        }
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private byte[] transcode(byte[] json) {
+        try {
+            return cborMapper.obtain().writeValueAsBytes(mapper.readTree(json));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to transcode payload to CBOR", e);
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+}
@@ -0,0 +1,107 @@
+package com.service;
+
+import com.model.Concersation_Message;
+import com.model.Conversation_Summary;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConversationSummaryServiceTests {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final ConversationSummaryService summaries = new ConversationSummaryService(mongoTemplate, 120, 20, 100);
+
+	private static Concersation_Message message(String id, String sender, String receiver, LocalDateTime timestamp) {
+		Concersation_Message msg = new Concersation_Message(sender, receiver, "hi " + id);
+		msg.setId(id);
+		msg.setTimestamp(timestamp);
+		return msg;
+	}
+
+	@Test
+	void batchTakesTheNewestMessageAndCountsEveryOne() {
+		LocalDateTime now = LocalDateTime.now();
+		summaries.recordMessages(List.of(
+				message("m2", "alice", "bob", now),
+				message("m1", "alice", "bob", now.minusSeconds(1)),
+				message("m3", "bob", "alice", now.minusSeconds(2))));
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(Conversation_Summary.class));
+		Document set = (Document) update.getValue().getUpdateObject().get("$set");
+		Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+		assertEquals("m2", set.get("lastMessageId"));
+		assertEquals(2, inc.get("unread.bob"));
+		assertEquals(1, inc.get("unread.alice"));
+	}
+
+	@Test
+	void olderMessageOnlyBumpsUnread() {
+		when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(Conversation_Summary.class)))
+				.thenThrow(new DuplicateKeyException("E11000"));
+
+		summaries.recordMessage(message("m1", "alice", "bob", LocalDateTime.now().minusMinutes(1)));
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(Conversation_Summary.class));
+		assertFalse(update.getValue().getUpdateObject().containsKey("$set"));
+		assertEquals(1, ((Document) update.getValue().getUpdateObject().get("$inc")).get("unread.bob"));
+	}
+
+	private static Conversation_Summary atVersion(long version) {
+		Conversation_Summary summary = new Conversation_Summary();
+		summary.setVersion(version);
+		return summary;
+	}
+
+	@Test
+	void readReceiptRecountsWhatIsLeftUnread() {
+		when(mongoTemplate.findOne(any(Query.class), eq(Conversation_Summary.class))).thenReturn(atVersion(3));
+		when(mongoTemplate.count(any(Query.class), eq(Concersation_Message.class))).thenReturn(2L);
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Conversation_Summary.class)))
+				.thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+		summaries.markRead("alice_bob", "bob", 7);
+
+		ArgumentCaptor<Query> counted = ArgumentCaptor.forClass(Query.class);
+		verify(mongoTemplate).count(counted.capture(), eq(Concersation_Message.class));
+		assertEquals(7L, ((Document) counted.getValue().getQueryObject().get("receiverSeq")).get("$gt"));
+		ArgumentCaptor<Query> guarded = ArgumentCaptor.forClass(Query.class);
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).updateFirst(guarded.capture(), update.capture(), eq(Conversation_Summary.class));
+		assertEquals(List.of(new Document("version", 3L)), guarded.getValue().getQueryObject().get("$and"));
+		assertEquals(2, ((Document) update.getValue().getUpdateObject().get("$set")).get("unread.bob"));
+	}
+
+	@Test
+	void messageRecordedDuringTheRecountIsCountedAgain() {
+		when(mongoTemplate.findOne(any(Query.class), eq(Conversation_Summary.class)))
+				.thenReturn(atVersion(3), atVersion(4));
+		when(mongoTemplate.count(any(Query.class), eq(Concersation_Message.class))).thenReturn(2L, 3L);
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Conversation_Summary.class)))
+				.thenReturn(UpdateResult.acknowledged(0, 0L, null), UpdateResult.acknowledged(1, 1L, null));
+
+		summaries.markRead("alice_bob", "bob", 7);
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate, times(2)).updateFirst(any(Query.class), update.capture(), eq(Conversation_Summary.class));
+		assertEquals(3, ((Document) update.getAllValues().get(1).getUpdateObject().get("$set")).get("unread.bob"));
+	}
+}
@@ -0,0 +1,64 @@
+package com.service;
+
+import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FirebaseTokenServiceTests {
+
+	private final VerifiedTokenCache cache = new VerifiedTokenCache(new SimpleMeterRegistry(), true, 100, 3600);
+	private final List<String> revokedAtFirebase = new ArrayList<>();
+	private final FirebaseTokenService service = new FirebaseTokenService(cache, new SimpleMeterRegistry()) {
+		@Override
+		protected void revokeRefreshTokens(String uid) {
+			revokedAtFirebase.add(uid);
+		}
+	};
+
+	private static FirebaseToken token(String uid) {
+		long now = System.currentTimeMillis() / 1000;
+		FirebaseToken token = mock(FirebaseToken.class);
+		when(token.getUid()).thenReturn(uid);
+		when(token.getClaims()).thenReturn(Map.of("iat", now - 60, "exp", now + 600));
+		return token;
+	}
+
+	@Test
+	void signOutDropsOnlyThePresentedToken() throws Exception {
+		FirebaseToken phone = token("alice");
+		FirebaseToken laptop = token("alice");
+		cache.put("token-phone", phone, cache.generation());
+		cache.put("token-laptop", laptop, cache.generation());
+
+		assertEquals("alice", service.signOut("token-phone", false));
+
+		assertNull(cache.get("token-phone"));
+		assertSame(laptop, cache.get("token-laptop"));
+		assertTrue(revokedAtFirebase.isEmpty());
+	}
+
+	@Test
+	void signOutEverywhereRevokesAtFirebaseAndRejectsOlderTokens() throws Exception {
+		FirebaseToken phone = token("alice");
+		FirebaseToken laptop = token("alice");
+		cache.put("token-phone", phone, cache.generation());
+		cache.put("token-laptop", laptop, cache.generation());
+
+		service.signOut("token-phone", true);
+
+		assertEquals(List.of("alice"), revokedAtFirebase);
+		assertNull(cache.get("token-laptop"));
+		assertTrue(cache.isRevoked(laptop));
+	}
+}
@@ -0,0 +1,80 @@
+package com.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.model.Concersation_Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageExportWriterTests {
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+	private final MessageExportWriter writer = new MessageExportWriter(objectMapper, 2);
+
+	@Test
+	void writesOneDocumentPerLineAsNdjson() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		writer.write("ndjson", () -> messages(3)).writeTo(out);
+
+		String[] lines = out.toString().split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("m2", objectMapper.readTree(lines[2]).get("message").asText());
+	}
+
+	@Test
+	void writesChunkedJsonArray() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		writer.write("stream", () -> messages(5)).writeTo(out);
+
+		JsonNode array = objectMapper.readTree(out.toByteArray());
+		assertTrue(array.isArray());
+		assertEquals(5, array.size());
+	}
+
+	@Test
+	void closesCursorWhenClientDisconnects() {
+		AtomicBoolean closed = new AtomicBoolean();
+		OutputStream broken = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+
+		assertDoesNotThrow(() -> writer.write("ndjson", () -> messages(10).onClose(() -> closed.set(true))).writeTo(broken));
+		assertTrue(closed.get());
+	}
+
+	@Test
+	void cursorIsOpenedOnlyWhenTheBodyRuns() throws Exception {
+		AtomicBoolean opened = new AtomicBoolean();
+
+		StreamingResponseBody body = writer.write("ndjson", () -> {
+			opened.set(true);
+			return messages(1);
+		});
+		assertFalse(opened.get());
+
+		body.writeTo(new ByteArrayOutputStream());
+		assertTrue(opened.get());
+	}
+
+	private static Stream<Concersation_Message> messages(int count) {
+		return Stream.iterate(0, i -> i + 1).limit(count)
+				.map(i -> new Concersation_Message("alice", "bob", "m" + i));
+	}
+}
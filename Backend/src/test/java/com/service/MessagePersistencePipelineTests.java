@@ -0,0 +1,91 @@
+package com.service;
+
+import com.model.Concersation_Message;
+import com.repository.Concersation_Message_Repo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessagePersistencePipelineTests {
+
+	private final Concersation_Message_Repo msgRepo = mock(Concersation_Message_Repo.class);
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+	private MessagePersistencePipeline pipeline(String mode, long writeTimeoutMs) {
+		MessagePersistencePipeline pipeline = new MessagePersistencePipeline(msgRepo, mongoTemplate,
+				new SimpleMeterRegistry(), mode, 5, 500, 100, writeTimeoutMs);
+		pipeline.start();
+		return pipeline;
+	}
+
+	@Test
+	void slowGroupCommitFallsBackToADirectWrite() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(mongoTemplate.insert(anyCollection(), eq(Concersation_Message.class))).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return invocation.getArgument(0);
+		});
+		when(msgRepo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+		MessagePersistencePipeline pipeline = pipeline("group-commit", 50);
+
+		Concersation_Message stored = pipeline.persist(new Concersation_Message("alice", "bob", "hi"));
+
+		assertNotNull(stored.getId());
+		verify(msgRepo).save(stored);
+		release.countDown();
+		pipeline.stop();
+	}
+
+	@Test
+	void stopWritesEverythingBuffered() {
+		List<Object> inserted = new CopyOnWriteArrayList<>();
+		when(mongoTemplate.insert(anyCollection(), eq(Concersation_Message.class))).thenAnswer(invocation -> {
+			inserted.addAll(invocation.getArgument(0, Collection.class));
+			return invocation.getArgument(0);
+		});
+		MessagePersistencePipeline pipeline = pipeline("ack-after-fanout", 1000);
+
+		for (int i = 0; i < 20; i++) {
+			pipeline.persist(new Concersation_Message("alice", "bob", "m" + i));
+		}
+		pipeline.stop();
+
+		assertEquals(20, inserted.size());
+	}
+
+	@Test
+	void listenersHearOfEachMessageOnceAfterItLands() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(mongoTemplate.insert(anyCollection(), eq(Concersation_Message.class))).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return invocation.getArgument(0);
+		});
+		when(msgRepo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+		MessagePersistencePipeline pipeline = pipeline("group-commit", 50);
+		List<Concersation_Message> landed = new CopyOnWriteArrayList<>();
+		pipeline.onPersisted(landed::addAll);
+
+		Concersation_Message stored = pipeline.persist(new Concersation_Message("alice", "bob", "hi"));
+		assertEquals(List.of(stored), landed);
+
+		// the slow batch lands as well, without a second notification
+		release.countDown();
+		pipeline.stop();
+		assertEquals(1, landed.size());
+	}
+}
@@ -0,0 +1,57 @@
+package com.service;
+
+import com.model.Concersation_Message;
+import com.repository.Concersation_Message_Repo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageServiceTests {
+
+	private final Concersation_Message_Repo msgRepo = mock(Concersation_Message_Repo.class);
+	private final MessagePersistencePipeline pipeline = mock(MessagePersistencePipeline.class);
+	private final DeliverySequenceService sequences = mock(DeliverySequenceService.class);
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final MessageService messageService = new MessageService(msgRepo, pipeline,
+			mock(ConversationSummaryService.class), sequences, mock(RecentMessageCache.class), registry);
+
+	@BeforeEach
+	void init() {
+		messageService.init();
+	}
+
+	private long saves(String path, String outcome) {
+		return registry.get("chat.messages.save").tag("path", path).tag("outcome", outcome).timer().count();
+	}
+
+	@Test
+	void createAndSaveAreTimedSeparately() {
+		when(pipeline.persist(any())).thenAnswer(invocation -> invocation.getArgument(0));
+		when(msgRepo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		messageService.createMessage("alice", "bob", "hi");
+		messageService.saveMessage(new Concersation_Message("alice", "bob", "hi"));
+
+		assertEquals(1, saves("create", "success"));
+		assertEquals(1, saves("save", "success"));
+	}
+
+	@Test
+	void failedWritesAreTimedAsFailures() {
+		when(sequences.next("bob")).thenThrow(new IllegalStateException("mongo down"));
+		when(msgRepo.save(any())).thenThrow(new IllegalStateException("mongo down"));
+
+		assertThrows(RuntimeException.class, () -> messageService.createMessage("alice", "bob", "hi"));
+		assertThrows(RuntimeException.class, () -> messageService.saveMessage(new Concersation_Message("alice", "bob", "hi")));
+
+		assertEquals(1, saves("create", "failure"));
+		assertEquals(1, saves("save", "failure"));
+		assertEquals(0, saves("create", "success"));
+	}
+}
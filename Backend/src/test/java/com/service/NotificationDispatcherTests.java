@@ -0,0 +1,231 @@
+package com.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NotificationDispatcherTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<Map<String, Object>> received = new CopyOnWriteArrayList<>();
+	private final AtomicInteger failuresToReturn = new AtomicInteger();
+	private final AtomicInteger rejectionsToReturn = new AtomicInteger();
+	private volatile String failingReceiver;
+	private volatile long responseDelayMs;
+	private final CountDownLatch requestStarted = new CountDownLatch(1);
+
+	private HttpServer stub;
+	private SimpleMeterRegistry meterRegistry;
+	private NotificationDispatcher dispatcher;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/", exchange -> {
+			requestStarted.countDown();
+			if (responseDelayMs > 0) {
+				try {
+					Thread.sleep(responseDelayMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			int status = 200;
+			String response = "{\"success\":true}";
+			if (failuresToReturn.getAndDecrement() > 0) {
+				status = 500;
+			} else if (rejectionsToReturn.getAndDecrement() > 0) {
+				status = 400;
+			} else {
+				Map<String, Object> request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+				received.add(request);
+				if (request.get("receiverIds") instanceof List<?> ids && ids.contains(failingReceiver)) {
+					failingReceiver = null;
+					response = "{\"success\":false,\"failedReceiverIds\":[\"" + ids.get(0) + "\"]}";
+				}
+			}
+			byte[] body = response.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		stub.start();
+		meterRegistry = new SimpleMeterRegistry();
+	}
+
+	@AfterEach
+	void stopStub() {
+		if (dispatcher != null) {
+			dispatcher.stop();
+		}
+		stub.stop(0);
+	}
+
+	private NotificationDispatcher startDispatcher(int capacity) {
+		String baseUrl = "http://127.0.0.1:" + stub.getAddress().getPort();
+		FirebaseNotificationService client = new FirebaseNotificationService(meterRegistry, baseUrl, 1000, 1000);
+		dispatcher = new NotificationDispatcher(client, meterRegistry, capacity, 2, 150, 3, 20, 2, 2000);
+		dispatcher.start();
+		return dispatcher;
+	}
+
+	private void awaitCount(String meter, double expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (meterRegistry.counter(meter).count() < expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	void coalescesMessagesPerReceiverAndSender() throws Exception {
+		startDispatcher(100);
+
+		dispatcher.submit("bob", "alice", "hi", "Alice");
+		dispatcher.submit("bob", "alice", "are you there?", "Alice");
+		dispatcher.submit("bob", "carol", "lunch?", "Carol");
+		dispatcher.submit("dave", "alice", "hello", "Alice");
+
+		awaitCount("chat.notifications.sent", 3);
+
+		assertEquals(3, received.size());
+		Map<String, Object> fromAlice = received.stream()
+				.filter(n -> "bob".equals(n.get("receiverId")) && "alice".equals(n.get("senderId")))
+				.findFirst().orElseThrow();
+		Map<String, Object> fromCarol = received.stream()
+				.filter(n -> "bob".equals(n.get("receiverId")) && "carol".equals(n.get("senderId")))
+				.findFirst().orElseThrow();
+		assertEquals(2, fromAlice.get("messageCount"));
+		assertEquals("Alice", fromAlice.get("senderName"));
+		assertEquals(1, fromCarol.get("messageCount"));
+		assertEquals(1.0, meterRegistry.counter("chat.notifications.coalesced").count());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	void retriesFailedDeliveries() throws Exception {
+		failuresToReturn.set(2);
+		startDispatcher(100);
+
+		dispatcher.submit("bob", "alice", "hi", "Alice");
+
+		awaitCount("chat.notifications.sent", 1);
+
+		assertEquals(1, received.size());
+		assertEquals(2.0, meterRegistry.counter("chat.notifications.retried").count());
+		assertEquals(0.0, meterRegistry.counter("chat.notifications.failed").count());
+	}
+
+	@Test
+	void doesNotRetryRejectedDeliveries() throws Exception {
+		rejectionsToReturn.set(1);
+		startDispatcher(100);
+
+		dispatcher.submit("bob", "alice", "hi", "Alice");
+
+		awaitCount("chat.notifications.failed", 1);
+
+		assertEquals(0, received.size());
+		assertEquals(0.0, meterRegistry.counter("chat.notifications.retried").count());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	void retriesOnlyFailedRoomReceivers() throws Exception {
+		failingReceiver = "bob";
+		startDispatcher(100);
+
+		dispatcher.submitRoom("r1", List.of("bob", "carol"), "alice", "hi", "Alice");
+
+		awaitCount("chat.notifications.sent", 1);
+
+		assertEquals(2, received.size());
+		assertEquals(List.of("bob", "carol"), received.get(0).get("receiverIds"));
+		assertEquals(List.of("bob"), received.get(1).get("receiverIds"));
+		assertEquals(2.0, meterRegistry.counter("chat.notifications.batched.receivers").count());
+	}
+
+	@Test
+	void flushesPendingNotificationsOnStop() {
+		startDispatcher(100);
+
+		dispatcher.submit("bob", "alice", "hi", "Alice");
+		dispatcher.submitRoom("r1", List.of("carol"), "alice", "hey", "Alice");
+		dispatcher.stop();
+
+		assertEquals(2, received.size());
+		assertEquals(2.0, meterRegistry.counter("chat.notifications.sent").count());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	void batchesRoomNotificationsPerRoom() throws Exception {
+		startDispatcher(1);
+
+		assertTrue(dispatcher.submitRoom("r1", List.of("bob", "carol", "dave"), "alice", "hi", "Alice"));
+		assertTrue(dispatcher.submitRoom("r1", List.of("dave", "erin"), "alice", "hey all", "Alice"));
+		// another sender in the same room is its own notification, and the queue holds only one
+		assertFalse(dispatcher.submitRoom("r1", List.of("alice"), "bob", "hi", "Bob"));
+
+		awaitCount("chat.notifications.batched.receivers", 4);
+
+		assertEquals(2, received.size());
+		assertEquals(List.of("bob", "carol"), received.get(0).get("receiverIds"));
+		assertEquals(List.of("dave", "erin"), received.get(1).get("receiverIds"));
+		assertEquals("r1", received.get(0).get("roomId"));
+		assertEquals(2, received.get(0).get("messageCount"));
+		assertEquals("alice", received.get(1).get("senderId"));
+	}
+
+	@Test
+	void stopWaitsForADeliveryInProgress() throws Exception {
+		responseDelayMs = 300;
+		startDispatcher(100);
+
+		dispatcher.submit("bob", "alice", "hi", "Alice");
+		assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+		dispatcher.stop();
+
+		assertEquals(1.0, meterRegistry.counter("chat.notifications.sent").count());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	void submitAfterStopIsRejected() {
+		startDispatcher(100);
+		dispatcher.stop();
+
+		assertFalse(dispatcher.submit("bob", "alice", "hi", "Alice"));
+		assertFalse(dispatcher.submitRoom("r1", List.of("carol"), "alice", "hey", "Alice"));
+
+		assertEquals(2.0, meterRegistry.counter("chat.notifications.dropped").count());
+		assertEquals(0, dispatcher.getQueueDepth());
+	}
+
+	@Test
+	void dropsWhenQueueIsFull() {
+		startDispatcher(1);
+
+		assertTrue(dispatcher.submit("bob", "alice", "hi", "Alice"));
+		assertTrue(dispatcher.submit("bob", "alice", "again", "Alice"));
+		assertFalse(dispatcher.submit("dave", "alice", "hello", "Alice"));
+
+		assertEquals(1.0, meterRegistry.counter("chat.notifications.dropped").count());
+	}
+}
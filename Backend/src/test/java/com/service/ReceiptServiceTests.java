@@ -0,0 +1,79 @@
+package com.service;
+
+import com.model.Ack_Frame;
+import com.model.Concersation_Message;
+import com.model.Receipt_Event;
+import com.websocket.Message_Fanout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReceiptServiceTests {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final BulkOperations bulk = mock(BulkOperations.class);
+	private final Message_Fanout messageFanout = mock(Message_Fanout.class);
+	private final ConversationSummaryService summaries = mock(ConversationSummaryService.class);
+	private final RecentMessageCache recent = new RecentMessageCache(new SimpleMeterRegistry(), true, 1 << 20, 50);
+	private final ReceiptService receipts = new ReceiptService(mongoTemplate, messageFanout, summaries, recent,
+			new SimpleMeterRegistry(), 250);
+
+	@Test
+	void coalescesAcksIntoOneBulkAndOneEvent() {
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "messages")).thenReturn(bulk);
+
+		for (long seq = 1; seq <= 1000; seq++) {
+			receipts.acknowledge(new Ack_Frame("bob", "alice_bob", seq, "m" + seq, ReceiptService.READ));
+		}
+		receipts.flush();
+
+		verify(bulk, times(1)).execute();
+		verify(bulk, times(2)).updateMulti(any(Query.class), any(Update.class));
+		verify(summaries).markRead("alice_bob", "bob", 1000L);
+		ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+		verify(messageFanout, times(1)).sendToUser(eq("alice"), eq("/queue/receipts"), event.capture());
+		assertEquals(1000, ((Receipt_Event) event.getValue()).upToSeq());
+	}
+
+	@Test
+	void ackThenFetchRecentSeesTheReceipt() {
+		when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "messages")).thenReturn(bulk);
+		Concersation_Message unread = new Concersation_Message("alice", "bob", "hi");
+		unread.setId("m1");
+		unread.setReceiverSeq(1L);
+		assertNull(recent.get("alice_bob", id -> List.of(unread)).get(0).getReadAt());
+
+		receipts.acknowledge(new Ack_Frame("bob", "alice_bob", 1, "m1", ReceiptService.READ));
+		receipts.flush();
+
+		Concersation_Message read = new Concersation_Message("alice", "bob", "hi");
+		read.setId("m1");
+		read.setReceiverSeq(1L);
+		read.setReadAt(LocalDateTime.now());
+		assertNotNull(recent.get("alice_bob", id -> List.of(read)).get(0).getReadAt());
+	}
+
+	@Test
+	void findsTheOtherParticipant() {
+		assertEquals("bob", ReceiptService.otherParticipant("alice_bob", "alice"));
+		assertEquals("alice", ReceiptService.otherParticipant("alice_bob", "bob"));
+		assertNull(ReceiptService.otherParticipant("alice_bob", "carol"));
+	}
+}
@@ -0,0 +1,91 @@
+package com.service;
+
+import com.model.Concersation_Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentMessageCacheTests {
+
+	private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private static Concersation_Message message(int n) {
+		Concersation_Message msg = new Concersation_Message("alice", "bob", "message " + n);
+		msg.setId(String.format("65a0000000000000000%05d", n));
+		msg.setTimestamp(T0.plusSeconds(n));
+		return msg;
+	}
+
+	// what Mongo would return for the conversation: newest first, at most `limit`
+	private Function<String, List<Concersation_Message>> loader(int newest, int limit) {
+		return conversationId -> {
+			loads.incrementAndGet();
+			List<Concersation_Message> page = new ArrayList<>();
+			for (int n = newest; n > newest - limit && n > 0; n--) {
+				page.add(message(n));
+			}
+			return page;
+		};
+	}
+
+	private static List<String> texts(List<Concersation_Message> messages) {
+		return messages.stream().map(Concersation_Message::getMessage).toList();
+	}
+
+	@Test
+	void servesWarmConversationsFromMemoryAndWritesThrough() {
+		RecentMessageCache cache = new RecentMessageCache(meterRegistry, true, 1 << 20, 3);
+
+		assertEquals(List.of("message 5", "message 4", "message 3"), texts(cache.get("alice_bob", loader(5, 3))));
+		cache.append(message(6));
+		cache.append(message(6));
+
+		assertEquals(List.of("message 6", "message 5", "message 4"), texts(cache.get("alice_bob", loader(6, 3))));
+		assertEquals(1, loads.get());
+		assertEquals(0.5, meterRegistry.get("chat.messages.recent.hit.ratio").gauge().value());
+	}
+
+	@Test
+	void ignoresColdConversationsAndKeepsOrderOnLateWrites() {
+		RecentMessageCache cache = new RecentMessageCache(meterRegistry, true, 1 << 20, 3);
+
+		cache.append(message(9));
+		assertEquals(0, cache.conversationCount());
+
+		cache.get("alice_bob", loader(5, 3));
+		cache.append(message(7));
+		cache.append(message(6));
+		cache.append(message(1));
+
+		assertEquals(List.of("message 7", "message 6", "message 5"), texts(cache.get("alice_bob", loader(7, 3))));
+	}
+
+	@Test
+	void reweighsOnAppendAndEvictsWholeConversations() {
+		RecentMessageCache cache = new RecentMessageCache(meterRegistry, true, 1 << 20, 50);
+
+		cache.get("alice_bob", loader(1, 50));
+		long oneMessage = cache.residentBytes();
+		cache.append(message(2));
+		long twoMessages = cache.residentBytes();
+		assertEquals(RecentMessageCache.estimateBytes(message(2)), twoMessages - oneMessage);
+
+		RecentMessageCache small = new RecentMessageCache(meterRegistry, true, 10 * oneMessage, 50);
+		for (int i = 0; i < 100; i++) {
+			small.get("conversation-" + i, loader(1, 50));
+		}
+		assertTrue(small.conversationCount() <= 10);
+		assertTrue(small.residentBytes() <= 10 * oneMessage);
+	}
+}
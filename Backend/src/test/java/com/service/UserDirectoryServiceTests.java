@@ -0,0 +1,53 @@
+package com.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserDirectoryServiceTests {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+	private UserDirectoryService node() {
+		return new UserDirectoryService(mongoTemplate, 100, 500);
+	}
+
+	@Test
+	void everyNodeDerivesTheSameTagFromTheSharedVersion() {
+		when(mongoTemplate.findById("users-directory", Document.class, "counters"))
+				.thenReturn(new Document("version", 7L));
+
+		String tag = node().etag();
+
+		assertEquals("\"users-7\"", tag);
+		assertEquals(tag, node().etag());
+		assertTrue(node().matches("W/" + tag, tag));
+		assertFalse(node().matches("\"users-6\"", tag));
+	}
+
+	@Test
+	void changeBumpsTheSharedVersion() {
+		node().onUserChanged();
+
+		ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+		verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq("counters"));
+		assertEquals(1L, ((Document) update.getValue().getUpdateObject().get("$inc")).get("version"));
+	}
+
+	@Test
+	void missingVersionDocumentIsVersionZero() {
+		assertEquals("\"users-0\"", node().etag());
+	}
+}
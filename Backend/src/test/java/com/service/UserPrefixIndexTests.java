@@ -0,0 +1,64 @@
+package com.service;
+
+import com.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserPrefixIndexTests {
+
+	private static final Comparator<User> BY_NAME = Comparator.comparing(User::getNormalizedName);
+
+	@Test
+	void normalizesCaseAccentsAndPunctuation() {
+		assertEquals("jose o brien", User.normalize("  José O'Brien "));
+		assertEquals(List.of("jose", "o", "brien"), User.tokenize("José O'Brien"));
+	}
+
+	@Test
+	void matchesEveryQueryTokenAsAPrefix() {
+		UserPrefixIndex index = new UserPrefixIndex();
+		index.put(user("1", "Alice Smith"));
+		index.put(user("2", "Alicia Keys"));
+		index.put(user("3", "Bob Smithers"));
+
+		assertEquals(List.of("1", "2"), uids(index.candidates(User.tokenize("ali"), 10, BY_NAME)));
+		assertEquals(List.of("1"), uids(index.candidates(User.tokenize("smi ali"), 10, BY_NAME)));
+	}
+
+	@Test
+	void renameDropsOldTokens() {
+		UserPrefixIndex index = new UserPrefixIndex();
+		index.put(user("1", "Alice"));
+		index.put(user("1", "Carol"));
+
+		assertTrue(index.candidates(User.tokenize("ali"), 10, BY_NAME).isEmpty());
+		assertEquals(List.of("1"), uids(index.candidates(User.tokenize("car"), 10, BY_NAME)));
+	}
+
+	@Test
+	void capKeepsTheBestRankedMatches() {
+		UserPrefixIndex index = new UserPrefixIndex();
+		index.put(user("1", "Zara Ali"));
+		index.put(user("2", "Alina Zhou"));
+		index.put(user("3", "Ali"));
+
+		assertEquals(List.of("3", "2"),
+				uids(index.candidates(User.tokenize("ali"), 2, UserSearchService.ranking("ali", "ali"))));
+	}
+
+	private static User user(String uid, String name) {
+		User user = new User();
+		user.setUid(uid);
+		user.setName(name);
+		return user;
+	}
+
+	private static List<String> uids(List<User> users) {
+		return users.stream().map(User::getUid).toList();
+	}
+}
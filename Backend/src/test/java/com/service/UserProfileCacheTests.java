@@ -0,0 +1,63 @@
+package com.service;
+
+import com.model.User;
+import com.repository.User_Repo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserProfileCacheTests {
+
+	private final User_Repo userRepository = mock(User_Repo.class);
+	private final UserProfileCache cache = new UserProfileCache(userRepository, new SimpleMeterRegistry(), 100, 600, 30);
+
+	@Test
+	void cachesUnknownUids() {
+		when(userRepository.findById("ghost")).thenReturn(Optional.empty());
+
+		assertTrue(cache.get("ghost").isEmpty());
+		assertTrue(cache.get("ghost").isEmpty());
+
+		verify(userRepository, times(1)).findById("ghost");
+	}
+
+	@Test
+	void batchServesHitsAndLoadsMissesInOneQuery() {
+		when(userRepository.findById("alice")).thenReturn(Optional.of(user("alice")));
+		when(userRepository.findAllById(any())).thenReturn(List.of(user("bob")));
+		cache.get("alice");
+
+		List<User> users = cache.getAll(List.of("bob", "alice", "carol"));
+
+		assertEquals(List.of("bob", "alice"), users.stream().map(User::getUid).toList());
+		verify(userRepository, times(1)).findAllById(List.of("bob", "carol"));
+	}
+
+	@Test
+	void invalidateForcesReload() {
+		when(userRepository.findById("alice")).thenReturn(Optional.of(user("alice")));
+		cache.get("alice");
+
+		cache.invalidate("alice");
+		cache.get("alice");
+
+		verify(userRepository, times(2)).findById("alice");
+	}
+
+	private static User user(String uid) {
+		User user = new User();
+		user.setUid(uid);
+		user.setName(uid);
+		return user;
+	}
+}
@@ -0,0 +1,102 @@
+package com.service;
+
+import com.model.User;
+import com.model.User_Save_Result;
+import com.repository.User_Repo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTests {
+
+	private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+	private final User_Repo userRepository = mock(User_Repo.class);
+	private final UserProfileCache cache = new UserProfileCache(userRepository, new SimpleMeterRegistry(), 100, 600, 30);
+	private final UserService userService = new UserService(mongoTemplate, cache,
+			mock(UserSearchService.class), mock(UserDirectoryService.class), new SimpleMeterRegistry());
+
+	@Test
+	void firstLoginCreatesWithOneRoundTrip() {
+		User_Save_Result result = userService.saveUser(user("Alice"));
+
+		assertEquals(User_Save_Result.Outcome.CREATED, result.getOutcome());
+		assertEquals("alice@example.com", result.getUser().getEmail());
+		assertEquals(1, mockingDetails(mongoTemplate).getInvocations().size());
+		verify(userRepository, never()).findById(any());
+	}
+
+	@Test
+	void repeatLoginIsCheckedAgainstTheDatabase() {
+		userService.saveUser(user("Alice"));
+		// renamed through another node since this node cached the profile
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class)))
+				.thenReturn(user("Alice Elsewhere"));
+
+		User_Save_Result result = userService.saveUser(user("Alice"));
+
+		assertEquals(User_Save_Result.Outcome.UPDATED, result.getOutcome());
+		assertEquals("Alice", cache.get("u1").orElseThrow().getName());
+		assertEquals(2, mockingDetails(mongoTemplate).getInvocations().size());
+	}
+
+	@Test
+	void unchangedDocumentReplacesAStaleCachedCopy() {
+		User elsewhere = user("Alice Elsewhere");
+		cache.put(elsewhere);
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class)))
+				.thenThrow(new DuplicateKeyException("E11000"));
+
+		User_Save_Result result = userService.saveUser(user("Alice"));
+
+		assertEquals(User_Save_Result.Outcome.UNCHANGED, result.getOutcome());
+		assertEquals("Alice", result.getUser().getName());
+		assertNull(cache.getIfPresent("u1"));
+		verify(userRepository, never()).findById(any());
+	}
+
+	@Test
+	void changedNameUpdatesInPlace() {
+		User stored = user("Alice");
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class)))
+				.thenReturn(stored);
+
+		User_Save_Result result = userService.saveUser(user("Alice B"));
+
+		assertEquals(User_Save_Result.Outcome.UPDATED, result.getOutcome());
+		assertEquals("alice b", result.getUser().getNormalizedName());
+	}
+
+	@Test
+	void unchangedDocumentWithColdCacheReportsUnchanged() {
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(User.class)))
+				.thenThrow(new DuplicateKeyException("E11000"));
+
+		assertEquals(User_Save_Result.Outcome.UNCHANGED, userService.saveUser(user("Alice")).getOutcome());
+		assertEquals(1, mockingDetails(mongoTemplate).getInvocations().size());
+		verify(userRepository, never()).findById(any());
+	}
+
+	private static User user(String name) {
+		User user = new User();
+		user.setUid("u1");
+		user.setEmail("alice@example.com");
+		user.setName(name);
+		user.setPhotoURL("https://example.com/a.png");
+		user.setProvider("google");
+		return user;
+	}
+}
@@ -0,0 +1,70 @@
+package com.service;
+
+import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VerifiedTokenCacheTests {
+
+	private final VerifiedTokenCache cache = new VerifiedTokenCache(new SimpleMeterRegistry(), true, 100, 3600);
+
+	private static FirebaseToken token(String uid, long issuedAt, long expiresAt) {
+		FirebaseToken token = mock(FirebaseToken.class);
+		when(token.getUid()).thenReturn(uid);
+		when(token.getClaims()).thenReturn(Map.of("iat", issuedAt, "exp", expiresAt));
+		return token;
+	}
+
+	private static long now() {
+		return System.currentTimeMillis() / 1000;
+	}
+
+	@Test
+	void returnsCachedTokenUntilItExpires() {
+		FirebaseToken valid = token("alice", now() - 60, now() + 600);
+		FirebaseToken expired = token("bob", now() - 7200, now() - 3600);
+
+		cache.put("token-a", valid, cache.generation());
+		cache.put("token-b", expired, cache.generation());
+
+		assertSame(valid, cache.get("token-a"));
+		assertNull(cache.get("token-b"));
+		assertNull(cache.get("unknown"));
+	}
+
+	@Test
+	void revokingAUserEvictsAndRejectsOlderTokens() {
+		FirebaseToken before = token("alice", now() - 60, now() + 600);
+		cache.put("token-a", before, cache.generation());
+
+		cache.revokeUser("alice");
+
+		assertNull(cache.get("token-a"));
+		assertTrue(cache.isRevoked(before));
+		assertFalse(cache.isRevoked(token("alice", now() + 1, now() + 600)));
+		assertFalse(cache.isRevoked(token("bob", now() - 60, now() + 600)));
+	}
+
+	@Test
+	void verificationStartedBeforeARevokeIsNotCached() {
+		FirebaseToken token = token("alice", now() - 60, now() + 600);
+		long generation = cache.generation();
+
+		cache.revokeToken("token-a");
+		cache.put("token-a", token, generation);
+
+		assertNull(cache.get("token-a"));
+
+		cache.put("token-a", token, cache.generation());
+		assertSame(token, cache.get("token-a"));
+	}
+}
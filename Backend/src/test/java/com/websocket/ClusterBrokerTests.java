@@ -0,0 +1,159 @@
+package com.websocket;
+
+import com.config.Broker_Cluster_Config;
+import com.config.Execution_Config;
+import com.config.Firebase_Auth_Interceptor;
+import com.config.SecurityConfig;
+import com.config.WebSocket_Config;
+import com.google.firebase.auth.FirebaseToken;
+import com.service.FirebaseTokenService;
+import com.service.VerifiedTokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClusterBrokerTests {
+
+	@SpringBootConfiguration
+	@EnableAutoConfiguration(exclude = {
+			MongoAutoConfiguration.class,
+			MongoDataAutoConfiguration.class,
+			MongoRepositoriesAutoConfiguration.class})
+	@Import({WebSocket_Config.class, Execution_Config.class, Broker_Cluster_Config.class, Firebase_Auth_Interceptor.class,
+			VerifiedTokenCache.class, SecurityConfig.class, Outbound_Session_Policy.class, Wire_Codec.class})
+	static class Node {
+
+		// the token is taken as the uid, so ?token=alice connects as alice
+		@Bean
+		FirebaseTokenService firebaseTokenService(VerifiedTokenCache tokenCache, MeterRegistry meterRegistry) {
+			return new FirebaseTokenService(tokenCache, meterRegistry) {
+				@Override
+				public FirebaseToken verifyToken(String idToken) {
+					FirebaseToken token = mock(FirebaseToken.class);
+					when(token.getUid()).thenReturn(idToken);
+					return token;
+				}
+			};
+		}
+	}
+
+	private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+	private final List<StompSession> sessions = new ArrayList<>();
+	private WebSocketStompClient stompClient;
+
+	@BeforeEach
+	void startNodes() {
+		String clusterName = "test-" + System.nanoTime();
+		for (int i = 0; i < 3; i++) {
+			nodes.add(new SpringApplicationBuilder(Node.class).run(
+					"--server.port=0",
+					"--spring.main.banner-mode=off",
+					"--chat.broker.mode=cluster",
+					"--chat.broker.cluster.name=" + clusterName,
+					"--chat.broker.cluster.node-id=node-" + i));
+		}
+		stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+		stompClient.setMessageConverter(new StringMessageConverter());
+	}
+
+	@AfterEach
+	void stopNodes() {
+		sessions.forEach(StompSession::disconnect);
+		nodes.forEach(ConfigurableApplicationContext::close);
+	}
+
+	private BlockingQueue<String> subscribe(int node, String destination) throws Exception {
+		return subscribe(node, null, destination);
+	}
+
+	private BlockingQueue<String> subscribe(int node, String uid, String destination) throws Exception {
+		int port = ((ServletWebServerApplicationContext) nodes.get(node)).getWebServer().getPort();
+		String url = "ws://localhost:" + port + "/ws" + (uid != null ? "?token=" + uid : "");
+		StompSession session = stompClient
+				.connectAsync(url, new StompSessionHandlerAdapter() {
+				})
+				.get(5, TimeUnit.SECONDS);
+		sessions.add(session);
+
+		BlockingQueue<String> received = new LinkedBlockingQueue<>();
+		session.subscribe(destination, new StompFrameHandler() {
+			@Override
+			public Type getPayloadType(StompHeaders headers) {
+				return String.class;
+			}
+
+			@Override
+			public void handleFrame(StompHeaders headers, Object payload) {
+				received.add((String) payload);
+			}
+		});
+		// SUBSCRIBE is fire-and-forget; give the broker a moment to register it
+		Thread.sleep(200);
+		return received;
+	}
+
+	@Test
+	void topicMessagesReachSubscribersOnOtherNodes() throws Exception {
+		BlockingQueue<String> onNode0 = subscribe(0, "/topic/chat/alice_bob");
+		BlockingQueue<String> onNode2 = subscribe(2, "/topic/chat/alice_bob");
+
+		nodes.get(1).getBean(SimpMessagingTemplate.class).convertAndSend("/topic/chat/alice_bob", "hello");
+
+		assertEquals("hello", onNode0.poll(5, TimeUnit.SECONDS));
+		assertEquals("hello", onNode2.poll(5, TimeUnit.SECONDS));
+		assertNull(onNode0.poll(300, TimeUnit.MILLISECONDS), "message delivered more than once");
+	}
+
+	@Test
+	void localSubscribersAreDeliveredOnce() throws Exception {
+		BlockingQueue<String> onNode0 = subscribe(0, "/topic/chat/alice_bob");
+
+		nodes.get(0).getBean(SimpMessagingTemplate.class).convertAndSend("/topic/chat/alice_bob", "local");
+
+		assertEquals("local", onNode0.poll(5, TimeUnit.SECONDS));
+		assertNull(onNode0.poll(300, TimeUnit.MILLISECONDS), "message delivered more than once");
+	}
+
+	@Test
+	void userQueueMessagesReachTheUsersSessionOnAnotherNode() throws Exception {
+		BlockingQueue<String> alice = subscribe(0, "alice", "/user/queue/messages");
+		BlockingQueue<String> bob = subscribe(2, "bob", "/user/queue/messages");
+
+		nodes.get(1).getBean(SimpMessagingTemplate.class).convertAndSendToUser("alice", "/queue/messages", "for alice");
+
+		assertEquals("for alice", alice.poll(5, TimeUnit.SECONDS));
+		assertNull(alice.poll(300, TimeUnit.MILLISECONDS), "message delivered more than once");
+		assertNull(bob.poll(100, TimeUnit.MILLISECONDS), "message delivered to another user");
+	}
+}
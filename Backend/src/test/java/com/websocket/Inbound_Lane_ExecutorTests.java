@@ -0,0 +1,128 @@
+package com.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Inbound_Lane_ExecutorTests {
+
+	private Inbound_Lane_Executor executor;
+
+	@AfterEach
+	void stop() {
+		executor.shutdown();
+	}
+
+	@Test
+	void keepsEachSessionInOrder() throws Exception {
+		executor = new Inbound_Lane_Executor(4, 1000, 1000, Thread::new, new SimpleMeterRegistry());
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+		List<String> seen = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(400);
+		channel.subscribe(message -> {
+			seen.add(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) + ":" + message.getPayload());
+			done.countDown();
+		});
+
+		for (int i = 0; i < 100; i++) {
+			for (String session : List.of("s1", "s2", "s3", "s4")) {
+				channel.send(frame(session, i));
+			}
+		}
+
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (String session : List.of("s1", "s2", "s3", "s4")) {
+			List<String> ordered = seen.stream().filter(s -> s.startsWith(session + ":")).toList();
+			for (int i = 0; i < 100; i++) {
+				assertEquals(session + ":" + i, ordered.get(i));
+			}
+		}
+	}
+
+	@Test
+	void blockedHandlerOnlyHoldsItsOwnLane() throws Exception {
+		executor = new Inbound_Lane_Executor(4, 1000, 1000, Thread::new, new SimpleMeterRegistry());
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> seen = new CopyOnWriteArrayList<>();
+		CountDownLatch others = new CountDownLatch(30);
+		channel.subscribe(message -> {
+			String session = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+			if (session.equals("s1")) {
+				try {
+					// a slow Mongo write
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			seen.add(session + ":" + message.getPayload());
+			if (!session.equals("s1")) {
+				others.countDown();
+			}
+		});
+
+		try {
+			channel.send(frame("s1", 0));
+			channel.send(frame("s1", 1));
+			// "s1".."s4" hash to four different lanes
+			for (int i = 0; i < 10; i++) {
+				for (String session : List.of("s2", "s3", "s4")) {
+					channel.send(frame(session, i));
+				}
+			}
+
+			assertTrue(others.await(2, TimeUnit.SECONDS), "sessions on other lanes were stalled");
+			assertTrue(seen.stream().noneMatch(s -> s.startsWith("s1:")));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	void rejectsWhenLaneStaysFull() throws Exception {
+		executor = new Inbound_Lane_Executor(1, 1, 50, Thread::new, new SimpleMeterRegistry());
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+		MessageHandler blocking = message -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		channel.subscribe(blocking);
+
+		channel.send(frame("s1", 0));
+		Thread.sleep(50);
+		channel.send(frame("s1", 1));
+
+		try {
+			MessageDeliveryException e = assertThrows(MessageDeliveryException.class, () -> channel.send(frame("s1", 2)));
+			assertTrue(e.getMessage().contains("full"));
+		} finally {
+			release.countDown();
+		}
+	}
+
+	private static Message<Integer> frame(String sessionId, int seq) {
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create();
+		headers.setSessionId(sessionId);
+		return MessageBuilder.createMessage(seq, headers.getMessageHeaders());
+	}
+}
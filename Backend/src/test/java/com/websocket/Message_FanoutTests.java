@@ -0,0 +1,77 @@
+package com.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.model.Concersation_Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class Message_FanoutTests {
+
+	private final AtomicInteger serializations = new AtomicInteger();
+
+	private final ObjectMapper countingMapper = new ObjectMapper() {
+		@Override
+		public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+			serializations.incrementAndGet();
+			return super.writeValueAsBytes(value);
+		}
+	}.registerModule(new JavaTimeModule());
+
+	private Concersation_Message message() {
+		Concersation_Message msg = new Concersation_Message("alice", "bob", "hi");
+		msg.setId("65a000000000000000000001");
+		return msg;
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void serializesOncePerMessageForAllDestinations() {
+		SimpMessageSendingOperations template = mock(SimpMessageSendingOperations.class);
+		Message_Fanout fanout = new Message_Fanout(template, new Wire_Codec(countingMapper),
+				new SimpleMeterRegistry(), true, true, true);
+
+		fanout.deliver(message());
+
+		ArgumentCaptor<String> destinations = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<Message<?>> frames = ArgumentCaptor.forClass(Message.class);
+		verify(template, times(5)).send(destinations.capture(), frames.capture());
+
+		assertEquals(1, serializations.get());
+		assertEquals(List.of(
+				"/user/bob/queue/messages",
+				"/user/alice/queue/messages",
+				"/topic/chat/alice_bob",
+				"/topic/chat/alice",
+				"/topic/chat/bob"), destinations.getAllValues());
+		Object payload = frames.getAllValues().get(0).getPayload();
+		frames.getAllValues().forEach(frame -> assertSame(payload, frame.getPayload()));
+	}
+
+	@Test
+	void legacyTopicsCanBeSwitchedOff() {
+		SimpMessageSendingOperations template = mock(SimpMessageSendingOperations.class);
+		Message_Fanout fanout = new Message_Fanout(template, new Wire_Codec(countingMapper),
+				new SimpleMeterRegistry(), true, true, false);
+
+		fanout.deliver(message());
+
+		verify(template, times(3)).send(anyString(), any(Message.class));
+		assertEquals(1, serializations.get());
+	}
+}
@@ -0,0 +1,97 @@
+package com.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class Outbound_Session_PolicyTests {
+
+	private final Outbound_Session_Policy policy = new Outbound_Session_Policy(new SimpleMeterRegistry(), 2, 4, 10000,
+			List.of("/user/queue/typing", "/topic/user-status"));
+	private final WebSocketSession session = mock(WebSocketSession.class);
+	private final WebSocketHandler handler = mock(WebSocketHandler.class);
+	private WebSocketSession counting;
+
+	@BeforeEach
+	void connect() throws Exception {
+		when(session.getId()).thenReturn("s1");
+		policy.decorate(handler).afterConnectionEstablished(session);
+		ArgumentCaptor<WebSocketSession> decorated = ArgumentCaptor.forClass(WebSocketSession.class);
+		verify(handler).afterConnectionEstablished(decorated.capture());
+		counting = decorated.getValue();
+	}
+
+	@Test
+	void dropsPresenceBeforeChatOnceBacklogged() {
+		assertNotNull(policy.preSend(frame("/topic/chat/a_b"), null));
+		assertNotNull(policy.preSend(frame("/topic/user-status"), null));
+
+		assertNull(policy.preSend(frame("/topic/user-status"), null));
+		assertNull(policy.preSend(userFrame("/queue/typing", "/user/queue/typing"), null));
+		assertNotNull(policy.preSend(frame("/topic/chat/a_b"), null));
+		assertEquals(3, policy.depthOf("s1"));
+	}
+
+	@Test
+	void closesSessionThatStaysBehind() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			assertNotNull(policy.preSend(frame("/topic/chat/a_b"), null));
+		}
+		verify(session, never()).close(CloseStatus.SESSION_NOT_RELIABLE);
+
+		assertNull(policy.preSend(frame("/topic/chat/a_b"), null));
+		verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+	}
+
+	@Test
+	void directlyWrittenFramesDoNotOffsetTheBacklog() throws Exception {
+		assertNotNull(policy.preSend(frame("/topic/chat/a_b"), null));
+		assertNotNull(policy.preSend(frame("/topic/chat/a_b"), null));
+
+		// an ERROR for a rejected inbound frame and a heartbeat, neither queued on the channel
+		counting.sendMessage(new TextMessage("ERROR\nmessage:denied\n\n\u0000"));
+		counting.sendMessage(new TextMessage("\n"));
+		assertEquals(2, policy.depthOf("s1"));
+
+		counting.sendMessage(new BinaryMessage("MESSAGE\ndestination:/topic/chat/a_b\n\n\u0000".getBytes(StandardCharsets.UTF_8)));
+		counting.sendMessage(new TextMessage("MESSAGE\ndestination:/topic/chat/a_b\n\n\u0000"));
+		assertEquals(0, policy.depthOf("s1"));
+	}
+
+	private static Message<byte[]> frame(String destination) {
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		headers.setSessionId("s1");
+		headers.setDestination(destination);
+		return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+	}
+
+	// as the user destination handler hands it to the broker: resolved to the session's queue
+	private static Message<byte[]> userFrame(String queue, String subscribedAs) {
+		SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		headers.setSessionId("s1");
+		headers.setDestination(queue + "-users1");
+		headers.setNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, subscribedAs);
+		return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+	}
+}
@@ -0,0 +1,97 @@
+package com.websocket;
+
+import com.model.Presence_Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class Presence_RegistryTests {
+
+	private final Message_Fanout fanout = mock(Message_Fanout.class);
+	private final Presence_Registry registry = new Presence_Registry(fanout, new SimpleMeterRegistry(), 10);
+
+	@Test
+	void broadcastsOnlyOnlineOfflineTransitions() {
+		registry.sessionOpened("s1", "alice");
+		registry.sessionOpened("s2", "alice");
+		registry.sessionClosed("s1");
+		assertTrue(registry.isOnline("alice"));
+
+		registry.sessionClosed("s2");
+		registry.sessionClosed("s2");
+		assertFalse(registry.isOnline("alice"));
+
+		ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+		verify(fanout, times(2)).send(eq("/topic/user-status"), events.capture());
+		assertEquals(List.of("online", "offline"),
+				events.getAllValues().stream().map(e -> ((Presence_Event) e).status()).toList());
+		assertEquals(0, registry.sessionCount());
+	}
+
+	@Test
+	void reconnectCarriesAHigherVersionThanTheDisconnectBeforeIt() {
+		registry.sessionOpened("s1", "alice");
+		registry.sessionClosed("s1");
+		registry.sessionOpened("s2", "alice");
+
+		ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+		verify(fanout, times(3)).send(eq("/topic/user-status"), events.capture());
+		List<Long> versions = events.getAllValues().stream().map(e -> ((Presence_Event) e).version()).toList();
+		assertTrue(versions.get(0) < versions.get(1) && versions.get(1) < versions.get(2), versions.toString());
+	}
+
+	@Test
+	void statusIsPublishedOnlyForUsersWithAnOpenSession() {
+		assertNull(registry.statusChanged("alice", "away"));
+		assertFalse(registry.sessionOpened("s0", "anonymous-1"));
+
+		registry.sessionOpened("s1", "alice");
+		assertNull(registry.statusChanged("alice", "offline"));
+		Presence_Event away = registry.statusChanged("alice", "away");
+
+		assertEquals("away", away.status());
+		verify(fanout).send("/topic/user-status", away);
+	}
+
+	@Test
+	void churnLeavesNothingBehind() throws Exception {
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10_000; i++) {
+					String session = "s-" + offset + "-" + i;
+					registry.sessionOpened(session, "user-" + (i % 3));
+					registry.sessionClosed(session);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, registry.sessionCount());
+		assertTrue(registry.onlineUsers().isEmpty());
+	}
+
+	@Test
+	void refusesSessionsBeyondCapacity() {
+		for (int i = 0; i < 10; i++) {
+			assertTrue(registry.sessionOpened("s" + i, "user-" + i));
+		}
+		assertFalse(registry.sessionOpened("s10", "user-10"));
+		assertEquals(10, registry.sessionCount());
+	}
+}
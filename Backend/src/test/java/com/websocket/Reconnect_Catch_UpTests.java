@@ -0,0 +1,109 @@
+package com.websocket;
+
+import com.model.Catch_Up_Batch;
+import com.model.Concersation_Message;
+import com.service.MessageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class Reconnect_Catch_UpTests {
+
+	private final MessageService messageService = mock(MessageService.class);
+	private final Message_Fanout messageFanout = mock(Message_Fanout.class);
+
+	@Test
+	void replaysOnlyTheGapInBatches() {
+		Reconnect_Catch_Up catchUp = new Reconnect_Catch_Up(messageService, messageFanout, new SimpleMeterRegistry(), 2, 100, 1, 5000);
+		when(messageService.getMessagesAfterSeq("bob", 7, 2)).thenReturn(received(8, 9));
+		when(messageService.getMessagesAfterSeq("bob", 9, 2)).thenReturn(received(10));
+
+		catchUp.replay("bob", "s1", 7);
+
+		List<Catch_Up_Batch> batches = sent(2);
+		assertEquals(9, batches.get(0).lastSeq());
+		assertFalse(batches.get(0).done());
+		assertEquals(10, batches.get(1).lastSeq());
+		assertTrue(batches.get(1).done());
+		catchUp.stop();
+	}
+
+	@Test
+	void marksTruncatedPastTheCap() {
+		Reconnect_Catch_Up catchUp = new Reconnect_Catch_Up(messageService, messageFanout, new SimpleMeterRegistry(), 2, 2, 1, 5000);
+		when(messageService.getMessagesAfterSeq("bob", 0, 2)).thenReturn(received(1, 2));
+
+		catchUp.replay("bob", "s1", 0);
+
+		Catch_Up_Batch last = sent(1).get(0);
+		assertTrue(last.done());
+		assertTrue(last.truncated());
+		catchUp.stop();
+	}
+
+	@Test
+	void waitsForASeqWhoseWriteLandsLate() {
+		Reconnect_Catch_Up catchUp = new Reconnect_Catch_Up(messageService, messageFanout, new SimpleMeterRegistry(), 2, 100, 1, 5000);
+		// seq 9 was assigned before 10 but written after it
+		when(messageService.getMessagesAfterSeq("bob", 7, 2)).thenReturn(received(8, 10));
+		when(messageService.getMessagesAfterSeq("bob", 8, 2)).thenReturn(received(9, 10));
+
+		catchUp.replay("bob", "s1", 7);
+
+		List<Catch_Up_Batch> batches = sent(3);
+		assertEquals(List.of(8L), seqs(batches.get(0)));
+		assertFalse(batches.get(0).done());
+		assertEquals(List.of(9L, 10L), seqs(batches.get(1)));
+		assertTrue(batches.get(2).done());
+		assertEquals(10, batches.get(2).lastSeq());
+		catchUp.stop();
+	}
+
+	@Test
+	void passesOverAnOldHole() {
+		Reconnect_Catch_Up catchUp = new Reconnect_Catch_Up(messageService, messageFanout, new SimpleMeterRegistry(), 2, 100, 1, 5000);
+		List<Concersation_Message> withHole = received(8, 10);
+		withHole.forEach(msg -> msg.setTimestamp(LocalDateTime.now().minusMinutes(5)));
+		when(messageService.getMessagesAfterSeq("bob", 7, 2)).thenReturn(withHole);
+
+		catchUp.replay("bob", "s1", 7);
+
+		List<Catch_Up_Batch> batches = sent(2);
+		assertEquals(List.of(8L, 10L), seqs(batches.get(0)));
+		assertTrue(batches.get(1).done());
+		catchUp.stop();
+	}
+
+	private static List<Long> seqs(Catch_Up_Batch batch) {
+		return batch.messages().stream().map(msg -> msg.seqFor("bob")).toList();
+	}
+
+	private List<Catch_Up_Batch> sent(int count) {
+		ArgumentCaptor<Catch_Up_Batch> captor = ArgumentCaptor.forClass(Catch_Up_Batch.class);
+		verify(messageFanout, times(count)).sendToSession(eq("bob"), eq("s1"), eq(Reconnect_Catch_Up.DESTINATION), captor.capture());
+		return captor.getAllValues();
+	}
+
+	private static List<Concersation_Message> received(long... seqs) {
+		List<Concersation_Message> messages = new ArrayList<>();
+		for (long seq : seqs) {
+			Concersation_Message msg = new Concersation_Message("alice", "bob", "m" + seq);
+			msg.setReceiverSeq(seq);
+			messages.add(msg);
+		}
+		return messages;
+	}
+}
@@ -0,0 +1,264 @@
+package com.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayBrokerTests {
+
+	private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+	private final List<StompSession> sessions = new ArrayList<>();
+	private Broker broker;
+	private WebSocketStompClient stompClient;
+
+	@BeforeEach
+	void startNodes() throws Exception {
+		broker = new Broker();
+		for (int i = 0; i < 2; i++) {
+			nodes.add(new SpringApplicationBuilder(ClusterBrokerTests.Node.class).run(
+					"--server.port=0",
+					"--spring.main.banner-mode=off",
+					"--chat.broker.mode=relay",
+					"--chat.broker.relay.port=" + broker.port()));
+		}
+		stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+		stompClient.setMessageConverter(new StringMessageConverter());
+	}
+
+	@AfterEach
+	void stopNodes() throws IOException {
+		sessions.forEach(StompSession::disconnect);
+		nodes.forEach(ConfigurableApplicationContext::close);
+		broker.close();
+	}
+
+	private void awaitBrokerAvailable(ConfigurableApplicationContext node) throws InterruptedException {
+		AbstractBrokerMessageHandler relay = node.getBean("stompBrokerRelayMessageHandler", AbstractBrokerMessageHandler.class);
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!relay.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertTrue(relay.isBrokerAvailable(), "relay never connected to the broker");
+	}
+
+	private BlockingQueue<String> subscribe(int node, String uid, String destination) throws Exception {
+		int port = ((ServletWebServerApplicationContext) nodes.get(node)).getWebServer().getPort();
+		StompSession session = stompClient
+				.connectAsync("ws://localhost:" + port + "/ws?token=" + uid, new StompSessionHandlerAdapter() {
+				})
+				.get(5, TimeUnit.SECONDS);
+		sessions.add(session);
+
+		BlockingQueue<String> received = new LinkedBlockingQueue<>();
+		session.subscribe(destination, new StompFrameHandler() {
+			@Override
+			public Type getPayloadType(StompHeaders headers) {
+				return String.class;
+			}
+
+			@Override
+			public void handleFrame(StompHeaders headers, Object payload) {
+				received.add((String) payload);
+			}
+		});
+		// SUBSCRIBE is relayed fire-and-forget; give the broker a moment to register it
+		Thread.sleep(300);
+		return received;
+	}
+
+	@Test
+	void startsInRelayModeAndConnectsToTheBroker() throws Exception {
+		for (ConfigurableApplicationContext node : nodes) {
+			awaitBrokerAvailable(node);
+		}
+	}
+
+	@Test
+	void topicMessagesReachSubscribersOnOtherNodes() throws Exception {
+		for (ConfigurableApplicationContext node : nodes) {
+			awaitBrokerAvailable(node);
+		}
+		BlockingQueue<String> onNode0 = subscribe(0, "alice", "/topic/chat/alice_bob");
+
+		nodes.get(1).getBean(SimpMessagingTemplate.class).convertAndSend("/topic/chat/alice_bob", "hello");
+
+		assertEquals("hello", onNode0.poll(5, TimeUnit.SECONDS));
+		assertNull(onNode0.poll(300, TimeUnit.MILLISECONDS), "message delivered more than once");
+	}
+
+	@Test
+	void userQueueMessagesReachTheUsersSessionOnAnotherNode() throws Exception {
+		for (ConfigurableApplicationContext node : nodes) {
+			awaitBrokerAvailable(node);
+		}
+		BlockingQueue<String> alice = subscribe(0, "alice", "/user/queue/messages");
+		BlockingQueue<String> bob = subscribe(1, "bob", "/user/queue/messages");
+
+		// alice has no session on node 1, so it goes out through the user destination broadcast
+		nodes.get(1).getBean(SimpMessagingTemplate.class).convertAndSendToUser("alice", "/queue/messages", "for alice");
+
+		assertEquals("for alice", alice.poll(5, TimeUnit.SECONDS));
+		assertNull(alice.poll(300, TimeUnit.MILLISECONDS), "message delivered more than once");
+		assertNull(bob.poll(100, TimeUnit.MILLISECONDS), "message delivered to another user");
+	}
+
+	// Just enough of a STOMP 1.2 broker for the relay: CONNECT, SUBSCRIBE/UNSUBSCRIBE and SEND fanned
+	// out to every subscription with the same destination. No heart-beats, acks or transactions.
+	private static final class Broker implements AutoCloseable {
+
+		private final ServerSocket server = new ServerSocket(0);
+		private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+		private final List<Socket> connections = new CopyOnWriteArrayList<>();
+		private final AtomicLong messageIds = new AtomicLong();
+
+		private record Subscription(Connection connection, String id) {
+		}
+
+		Broker() throws IOException {
+			Thread acceptor = new Thread(this::accept, "stomp-test-broker");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		int port() {
+			return server.getLocalPort();
+		}
+
+		private void accept() {
+			while (!server.isClosed()) {
+				try {
+					Socket socket = server.accept();
+					connections.add(socket);
+					Thread reader = new Thread(() -> new Connection(socket).run(), "stomp-test-broker-conn");
+					reader.setDaemon(true);
+					reader.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			server.close();
+			for (Socket socket : connections) {
+				socket.close();
+			}
+		}
+
+		private final class Connection {
+
+			private final Socket socket;
+			private final StompEncoder encoder = new StompEncoder();
+
+			Connection(Socket socket) {
+				this.socket = socket;
+			}
+
+			void run() {
+				StompDecoder decoder = new StompDecoder();
+				ByteBuffer pending = ByteBuffer.allocate(0);
+				byte[] chunk = new byte[8192];
+				try (InputStream in = socket.getInputStream()) {
+					int read;
+					while ((read = in.read(chunk)) != -1) {
+						ByteBuffer buffer = ByteBuffer.allocate(pending.remaining() + read);
+						buffer.put(pending).put(chunk, 0, read).flip();
+						for (Message<byte[]> frame : decoder.decode(buffer)) {
+							handle(frame);
+						}
+						pending = buffer.slice();
+					}
+				} catch (IOException e) {
+					// connection closed
+				} finally {
+					subscriptions.values().forEach(list -> list.removeIf(s -> s.connection() == this));
+				}
+			}
+
+			private void handle(Message<byte[]> frame) throws IOException {
+				StompHeaderAccessor in = StompHeaderAccessor.wrap(frame);
+				if (in.getCommand() == null) {
+					return;
+				}
+				switch (in.getCommand()) {
+					case CONNECT, STOMP -> {
+						StompHeaderAccessor out = StompHeaderAccessor.create(StompCommand.CONNECTED);
+						out.setVersion("1.2");
+						out.setHeartbeat(0, 0);
+						write(out, new byte[0]);
+					}
+					case SUBSCRIBE -> subscriptions
+							.computeIfAbsent(in.getDestination(), d -> new CopyOnWriteArrayList<>())
+							.add(new Subscription(this, in.getSubscriptionId()));
+					case UNSUBSCRIBE -> subscriptions.values().forEach(list -> list.removeIf(
+							s -> s.connection() == this && s.id().equals(in.getSubscriptionId())));
+					case SEND -> {
+						for (Subscription subscription : subscriptions.getOrDefault(in.getDestination(), List.of())) {
+							// custom headers travel with the message, as on a real broker
+							StompHeaderAccessor out = StompHeaderAccessor.create(StompCommand.MESSAGE, in.toNativeHeaderMap());
+							out.setSubscriptionId(subscription.id());
+							out.setMessageId(String.valueOf(messageIds.incrementAndGet()));
+							subscription.connection().write(out, frame.getPayload());
+						}
+					}
+					case DISCONNECT -> {
+						if (in.getReceipt() != null) {
+							StompHeaderAccessor out = StompHeaderAccessor.create(StompCommand.RECEIPT);
+							out.setReceiptId(in.getReceipt());
+							write(out, new byte[0]);
+						}
+						socket.close();
+					}
+					default -> {
+					}
+				}
+			}
+
+			private synchronized void write(StompHeaderAccessor headers, byte[] payload) throws IOException {
+				OutputStream out = socket.getOutputStream();
+				out.write(encoder.encode(MessageBuilder.createMessage(payload, headers.getMessageHeaders())));
+				out.flush();
+			}
+		}
+	}
+}
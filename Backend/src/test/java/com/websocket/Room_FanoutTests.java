@@ -0,0 +1,102 @@
+package com.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.model.Room_Message;
+import com.service.NotificationDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class Room_FanoutTests {
+
+	private final AtomicInteger serializations = new AtomicInteger();
+
+	private final ObjectMapper countingMapper = new ObjectMapper() {
+		@Override
+		public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+			serializations.incrementAndGet();
+			return super.writeValueAsBytes(value);
+		}
+	}.registerModule(new JavaTimeModule());
+
+	private final SimpMessageSendingOperations template = mock(SimpMessageSendingOperations.class);
+	private final NotificationDispatcher dispatcher = mock(NotificationDispatcher.class);
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final Message_Fanout messageFanout = new Message_Fanout(template, new Wire_Codec(countingMapper),
+			meterRegistry, true, true, true);
+	private final Presence_Registry presence = new Presence_Registry(mock(Message_Fanout.class), meterRegistry, 100000);
+	private final Room_Fanout fanout = new Room_Fanout(messageFanout, presence, dispatcher, meterRegistry);
+
+	private static Room_Message message() {
+		Room_Message msg = new Room_Message("r1", "m0", "Member 0", "hello room");
+		msg.setId("65a000000000000000000001");
+		return msg;
+	}
+
+	// even-numbered members are online
+	private Set<String> room(int size) {
+		Set<String> members = new LinkedHashSet<>();
+		for (int i = 0; i < size; i++) {
+			members.add("m" + i);
+			if (i % 2 == 0) {
+				presence.sessionOpened("s" + i, "m" + i);
+			}
+		}
+		return members;
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {2, 100, 5000})
+	@SuppressWarnings("unchecked")
+	void publishesOnceWhateverTheRoomSize(int size) {
+		fanout.deliver(message(), room(size));
+
+		verify(template, times(1)).send(eq("/topic/room/r1"), any(Message.class));
+		assertEquals(1, serializations.get());
+
+		ArgumentCaptor<Collection<String>> offline = ArgumentCaptor.forClass(Collection.class);
+		verify(dispatcher, times(1)).submitRoom(eq("r1"), offline.capture(), eq("m0"), eq("hello room"), eq("Member 0"));
+		assertEquals(size / 2, offline.getValue().size());
+		assertEquals(size, meterRegistry.summary("chat.rooms.fanout.members").totalAmount());
+	}
+
+	@Test
+	void skipsNotificationsWhenEveryoneIsOnline() {
+		presence.sessionOpened("s1", "m1");
+
+		fanout.deliver(message(), Set.of("m0", "m1"));
+
+		verify(dispatcher, never()).submitRoom(anyString(), anyCollection(), anyString(), anyString(), anyString());
+	}
+
+	@Test
+	void parsesRoomIdFromDestination() {
+		assertEquals("r1", Room_Fanout.roomIdOf("/topic/room/r1"));
+		assertNull(Room_Fanout.roomIdOf("/topic/room/"));
+		assertNull(Room_Fanout.roomIdOf("/topic/room/r1/extra"));
+		assertNull(Room_Fanout.roomIdOf("/topic/chat/r1"));
+	}
+}
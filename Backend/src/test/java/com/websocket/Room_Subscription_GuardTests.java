@@ -0,0 +1,114 @@
+package com.websocket;
+
+import com.service.RoomService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.security.Principal;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class Room_Subscription_GuardTests {
+
+	private final RoomService roomService = mock(RoomService.class);
+	private final MessageChannel inbound = mock(MessageChannel.class);
+	private Room_Subscription_Guard guard;
+	private BiConsumer<String, String> removals;
+
+	@SuppressWarnings("unchecked")
+	@BeforeEach
+	void setUp() {
+		guard = new Room_Subscription_Guard(roomService, inbound);
+		ArgumentCaptor<BiConsumer<String, String>> listener = ArgumentCaptor.forClass(BiConsumer.class);
+		verify(roomService).onMemberRemoved(listener.capture());
+		removals = listener.getValue();
+		when(roomService.isMember("r1", "alice")).thenReturn(true);
+		when(roomService.isMember("r1", "bob")).thenReturn(true);
+	}
+
+	@Test
+	void nonMembersCannotSubscribe() {
+		assertThrows(MessageDeliveryException.class, () -> guard.preSend(subscribe("s1", "sub-0", "mallory"), null));
+		assertEquals(0, guard.subscriptionCount());
+	}
+
+	@Test
+	void removingAMemberUnsubscribesOnlyTheirSessions() {
+		guard.preSend(subscribe("s1", "sub-0", "alice"), null);
+		guard.preSend(subscribe("s2", "sub-0", "bob"), null);
+
+		removals.accept("r1", "alice");
+
+		ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+		verify(inbound).send(sent.capture());
+		StompHeaderAccessor unsubscribe = StompHeaderAccessor.wrap(sent.getValue());
+		assertEquals(StompCommand.UNSUBSCRIBE, unsubscribe.getCommand());
+		assertEquals("s1", unsubscribe.getSessionId());
+		assertEquals("sub-0", unsubscribe.getSubscriptionId());
+		assertEquals(1, guard.subscriptionCount());
+	}
+
+	@Test
+	void roomFramesForAMemberRemovedElsewhereAreDropped() {
+		guard.preSend(subscribe("s1", "sub-0", "alice"), null);
+		assertNotNull(guard.preSend(roomFrame("s1", "sub-0"), null));
+
+		// removed through another node; this node sees it once its member cache reloads
+		when(roomService.isMember("r1", "alice")).thenReturn(false);
+
+		assertNull(guard.preSend(roomFrame("s1", "sub-0"), null));
+		assertNotNull(guard.preSend(roomFrame("s1", "sub-0"), null));
+		verify(inbound, times(1)).send(any());
+	}
+
+	@Test
+	void clientUnsubscribeStopsTracking() {
+		guard.preSend(subscribe("s1", "sub-0", "alice"), null);
+
+		StompHeaderAccessor unsubscribe = StompHeaderAccessor.create(StompCommand.UNSUBSCRIBE);
+		unsubscribe.setSessionId("s1");
+		unsubscribe.setSubscriptionId("sub-0");
+		guard.preSend(MessageBuilder.createMessage(new byte[0], unsubscribe.getMessageHeaders()), null);
+		removals.accept("r1", "alice");
+
+		assertEquals(0, guard.subscriptionCount());
+		verify(inbound, never()).send(any());
+	}
+
+	private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String user) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(Room_Fanout.TOPIC_PREFIX + "r1");
+		Principal principal = () -> user;
+		accessor.setUser(principal);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static Message<byte[]> roomFrame(String sessionId, String subscriptionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(Room_Fanout.TOPIC_PREFIX + "r1");
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
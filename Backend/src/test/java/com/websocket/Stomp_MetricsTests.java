@@ -0,0 +1,84 @@
+package com.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class Stomp_MetricsTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final MessageChannel channel = mock(MessageChannel.class);
+	private final Stomp_Metrics metrics = new Stomp_Metrics(meterRegistry, 3);
+
+	private static Message<byte[]> frame(StompCommand command, String sessionId, String subscriptionId,
+										 String destination, String body) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+	}
+
+	private void inbound(Message<byte[]> message) {
+		metrics.afterSendCompletion(metrics.preSend(message, channel), channel, true, null);
+	}
+
+	private double frames(String command, String destination) {
+		return meterRegistry.get("chat.stomp.inbound.frames")
+				.tag("command", command).tag("destination", destination).counter().count();
+	}
+
+	@Test
+	void countsFramesByCollapsedDestination() {
+		inbound(frame(StompCommand.SEND, "s1", null, "/app/chat", "{\"message\":\"hi\"}"));
+		inbound(frame(StompCommand.SEND, "s1", null, "/app/chat", "{}"));
+		inbound(frame(StompCommand.SUBSCRIBE, "s1", "sub-0", "/topic/chat/alice_bob", ""));
+		inbound(frame(StompCommand.SUBSCRIBE, "s2", "sub-0", "/topic/chat/carol_dave", ""));
+
+		assertEquals(2.0, frames("SEND", "/app/chat"));
+		assertEquals(2.0, frames("SUBSCRIBE", "/topic/chat/{id}"));
+		assertEquals(18.0, meterRegistry.get("chat.stomp.inbound.bytes").summary().totalAmount());
+		assertEquals(4, metrics.framesReceived());
+	}
+
+	@Test
+	void capsDistinctDestinations() {
+		for (int i = 0; i < 10; i++) {
+			inbound(frame(StompCommand.SEND, "s1", null, "/app/random-" + i, ""));
+		}
+
+		assertEquals(7.0, frames("SEND", "other"));
+		assertEquals(4, meterRegistry.get("chat.stomp.inbound.frames").counters().size());
+	}
+
+	@Test
+	void tracksSubscriptionsUntilDisconnect() {
+		inbound(frame(StompCommand.SUBSCRIBE, "s1", "sub-0", "/user/queue/messages", ""));
+		inbound(frame(StompCommand.SUBSCRIBE, "s1", "sub-1", "/topic/user-status", ""));
+		inbound(frame(StompCommand.SUBSCRIBE, "s2", "sub-0", "/user/queue/messages", ""));
+		inbound(frame(StompCommand.UNSUBSCRIBE, "s1", "sub-1", null, ""));
+		// a rejected SUBSCRIBE does not count
+		Message<byte[]> rejected = frame(StompCommand.SUBSCRIBE, "s2", "sub-1", "/topic/room/r1", "");
+		metrics.afterSendCompletion(metrics.preSend(rejected, channel), channel, false, new IllegalStateException());
+
+		assertEquals(2, metrics.subscriptionCount());
+		assertEquals(2.0, meterRegistry.get("chat.stomp.sessions").gauge().value());
+
+		Message<byte[]> close = frame(StompCommand.DISCONNECT, "s1", null, null, "");
+		metrics.onSessionDisconnect(new SessionDisconnectEvent(this, close, "s1", CloseStatus.NORMAL));
+
+		assertEquals(1.0, meterRegistry.get("chat.stomp.subscriptions").gauge().value());
+		assertEquals(1, metrics.sessionCount());
+	}
+}
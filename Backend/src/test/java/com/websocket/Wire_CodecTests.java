@@ -0,0 +1,106 @@
+package com.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.model.Presence_Event;
+import com.model.Typing_Frame;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Wire_CodecTests {
+
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+	@Test
+	void typingFrameKeepsClientFieldNames() throws Exception {
+		// the web client sends isTyping as a string
+		Typing_Frame frame = objectMapper.readValue(
+				"{\"senderId\":\"alice\",\"receiverId\":\"bob\",\"isTyping\":\"true\"}", Typing_Frame.class);
+
+		assertTrue(frame.isTyping());
+		assertEquals("{\"senderId\":\"alice\",\"receiverId\":\"bob\",\"isTyping\":true}",
+				new String(new Wire_Codec(objectMapper).encode(frame)));
+	}
+
+	@Test
+	void sessionsThatAcceptCborGetTheirCopyTranscoded() throws Exception {
+		Wire_Codec codec = new Wire_Codec(objectMapper);
+		codec.preSend(connect("s-cbor", "application/cbor, application/json"), null);
+		codec.preSend(connect("s-json", null), null);
+		Presence_Event event = new Presence_Event("alice", "online", "connect", 1L, 1700000000000L);
+		Message<byte[]> frame = codec.frame(event);
+
+		Message<?> toCbor = codec.preSend(toSession(frame, "s-cbor"), null);
+		Message<?> toJson = codec.preSend(toSession(frame, "s-json"), null);
+
+		assertEquals(Wire_Codec.APPLICATION_CBOR, toCbor.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+		byte[] cbor = (byte[]) toCbor.getPayload();
+		assertEquals(event, Wire_Codec.cborMapper(objectMapper).readValue(cbor, Presence_Event.class));
+		assertTrue(cbor.length < frame.getPayload().length);
+		assertSame(frame.getPayload(), toJson.getPayload());
+		assertEquals("application/json", toJson.getHeaders().get(MessageHeaders.CONTENT_TYPE).toString());
+	}
+
+	@Test
+	void fanOutToManyCborSessionsTranscodesOnce() {
+		Wire_Codec codec = new Wire_Codec(objectMapper);
+		codec.preSend(connect("s1", "application/cbor"), null);
+		codec.preSend(connect("s2", "application/cbor"), null);
+		Message<byte[]> frame = codec.frame(new Presence_Event("alice", "online", "connect", 1L, 1700000000000L));
+
+		assertSame(codec.preSend(toSession(frame, "s1"), null).getPayload(),
+				codec.preSend(toSession(frame, "s2"), null).getPayload());
+	}
+
+	@Test
+	void disconnectForgetsTheNegotiatedFormat() {
+		Wire_Codec codec = new Wire_Codec(objectMapper);
+		codec.preSend(connect("s1", "application/cbor"), null);
+
+		StompHeaderAccessor disconnect = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+		disconnect.setSessionId("s1");
+		codec.onSessionDisconnect(new SessionDisconnectEvent(this,
+				MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()), "s1", CloseStatus.NORMAL));
+
+		assertFalse(codec.isCbor("s1"));
+	}
+
+	@Test
+	void framesAreImmutable() {
+		Message<byte[]> frame = new Wire_Codec(objectMapper)
+				.frame(new Presence_Event("alice", "online", "connect", 1L, 1700000000000L));
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.getAccessor(frame, SimpMessageHeaderAccessor.class);
+		assertFalse(accessor.isMutable());
+		assertEquals("application/json", frame.getHeaders().get(MessageHeaders.CONTENT_TYPE).toString());
+	}
+
+	private static Message<byte[]> connect(String sessionId, String accept) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setSessionId(sessionId);
+		if (accept != null) {
+			accessor.setNativeHeader(Wire_Codec.ACCEPT_HEADER, accept);
+		}
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	// as the broker hands a fanned-out frame to one subscriber
+	private static Message<byte[]> toSession(Message<byte[]> frame, String sessionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(frame);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/topic/user-status");
+		return MessageBuilder.createMessage(frame.getPayload(), accessor.getMessageHeaders());
+	}
+}
@@ -12,6 +12,13 @@ export interface ChatMessage {
   timestamp?: string;
 }
 
+export interface ChatHistoryPage {
+  messages: ChatMessage[];
+  beforeCursor?: string;
+  afterCursor?: string;
+  hasMore: boolean;
+}
+
 @Injectable({
   providedIn: 'root'
 })
@@ -20,15 +27,19 @@ export class ChatService {
 
   constructor(private http: HttpClient) { }
 
-  //chat history
-  getChatHistory(user1: string, user2: string): Observable<ChatMessage[]> {
-    const params = new HttpParams()
+  //chat history, one page at a time (pass page.beforeCursor to load older messages)
+  getChatHistory(user1: string, user2: string, before?: string, limit?: number): Observable<ChatHistoryPage> {
+    let params = new HttpParams()
       .set('user1', user1)
       .set('user2', user2);
+    if (before) {
+      params = params.set('before', before);
+    }
+    if (limit) {
+      params = params.set('limit', limit);
+    }
 
-    return this.http.get<ChatMessage[]>(`${this.apiUrl}/history`, { params }).pipe(
-      map(messages => this.sortMessagesAscending(messages))
-    );
+    return this.http.get<ChatHistoryPage>(`${this.apiUrl}/history`, { params });
   }
   getRecentChatHistory(user1: string, user2: string): Observable<ChatMessage[]> {
     const params = new HttpParams()